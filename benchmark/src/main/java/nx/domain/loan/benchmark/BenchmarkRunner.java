@@ -0,0 +1,25 @@
+package nx.domain.loan.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * ベンチマークの実行<br>
+ * スループットに加えて、GCプロファイラでメモリの割り当て速度を出力する。
+ * 引数はJMHのコマンドラインオプションと同じ。
+ *
+ * 実行方法
+ * java -jar benchmark/target/benchmarks.jar [JMHのオプション] [ベンチマーク名の正規表現]
+ */
+public class BenchmarkRunner {
+    public static void main(String[] args) throws Exception {
+        final Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,34 @@
+package nx.domain.loan.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import nx.domain.loan.model.LoanInfo;
+import nx.domain.loan.payment.AbstractPaymentTable;
+
+/**
+ * 償還表の作成
+ */
+@State(Scope.Benchmark)
+public class ConstructionBenchmark {
+    @Param({"10", "35", "50"})
+    int years;
+
+    @Param({"STANDARD", "SIMPLE", "EQUAL_PRINCIPAL"})
+    Engine engine;
+
+    LoanInfo loanInfo;
+
+    @Setup
+    public void setup() {
+        loanInfo = engine.loanInfo(years);
+    }
+
+    @Benchmark
+    public AbstractPaymentTable construct() {
+        return engine.create(loanInfo);
+    }
+}
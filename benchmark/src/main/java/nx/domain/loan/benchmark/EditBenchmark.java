@@ -0,0 +1,71 @@
+package nx.domain.loan.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import nx.domain.loan.model.LoanInfo;
+import nx.domain.loan.payment.AbstractPaymentTable;
+
+/**
+ * 返済期間の序盤、中盤、終盤での繰り上げ返済と利率変更<br>
+ * 毎回新しい償還表に対して1回だけ変更する
+ */
+@State(Scope.Thread)
+public class EditBenchmark {
+    public enum Position {
+        EARLY,
+        MIDDLE,
+        LATE;
+
+        int installment(final int installments) {
+            switch (this) {
+            case EARLY:
+                return 12;
+            case MIDDLE:
+                return installments / 2;
+            default:
+                return installments - 24;
+            }
+        }
+    }
+
+    @Param({"10", "35", "50"})
+    int years;
+
+    @Param({"STANDARD", "SIMPLE", "EQUAL_PRINCIPAL"})
+    Engine engine;
+
+    @Param({"EARLY", "MIDDLE", "LATE"})
+    Position position;
+
+    LoanInfo loanInfo;
+    AbstractPaymentTable table;
+    int n;
+
+    @Setup(Level.Trial)
+    public void setupTrial() {
+        loanInfo = engine.loanInfo(years);
+        n = position.installment(loanInfo.installments);
+    }
+
+    @Setup(Level.Invocation)
+    public void setupInvocation() {
+        table = engine.create(loanInfo);
+    }
+
+    @Benchmark
+    public AbstractPaymentTable prepayment() {
+        table.prepayment(n, 1_000_000);
+        return table;
+    }
+
+    @Benchmark
+    public AbstractPaymentTable changeRate() {
+        table.changeRate(n, 0.02);
+        return table;
+    }
+}
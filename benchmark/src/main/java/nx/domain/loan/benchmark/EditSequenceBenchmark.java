@@ -0,0 +1,71 @@
+package nx.domain.loan.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import nx.domain.loan.model.LoanEvent;
+import nx.domain.loan.model.LoanInfo;
+import nx.domain.loan.payment.AbstractPaymentTable;
+
+/**
+ * 返済期間全体に分散した複数の繰り上げ返済と利率変更<br>
+ * 1件ずつ処理する場合とapply()でまとめて処理する場合を比較する
+ */
+@State(Scope.Thread)
+public class EditSequenceBenchmark {
+    @Param({"10", "35", "50"})
+    int years;
+
+    @Param({"STANDARD", "SIMPLE", "EQUAL_PRINCIPAL"})
+    Engine engine;
+
+    @Param({"1", "10", "100"})
+    int edits;
+
+    LoanInfo loanInfo;
+    List<LoanEvent> events;
+    AbstractPaymentTable table;
+
+    @Setup(Level.Trial)
+    public void setupTrial() {
+        loanInfo = engine.loanInfo(years);
+        events = new ArrayList<>(edits);
+        final int interval = Math.max(1, (loanInfo.installments - 2) / edits);
+        for (int i = 0; i < edits; i++) {
+            final int n = Math.min(1 + i * interval, loanInfo.installments - 1);
+            if (i % 2 == 0)
+                events.add(LoanEvent.changeRate(n, 0.005 + (i % 5) * 0.0025));
+            else
+                events.add(LoanEvent.prepayment(n, loanInfo.amount / (edits * 4L)));
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void setupInvocation() {
+        table = engine.create(loanInfo);
+    }
+
+    @Benchmark
+    public AbstractPaymentTable oneByOne() {
+        for (LoanEvent e : events) {
+            if (e.type == LoanEvent.Type.PREPAYMENT)
+                table.prepayment(e.index, e.amount);
+            else
+                table.changeRate(e.index, e.rate);
+        }
+        return table;
+    }
+
+    @Benchmark
+    public AbstractPaymentTable batch() {
+        table.apply(events);
+        return table;
+    }
+}
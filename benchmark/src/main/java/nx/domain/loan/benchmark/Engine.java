@@ -0,0 +1,41 @@
+package nx.domain.loan.benchmark;
+
+import nx.domain.loan.model.LoanInfo;
+import nx.domain.loan.model.LoanInfo.PaymentType;
+import nx.domain.loan.model.LoanInfo.PrepaymentType;
+import nx.domain.loan.model.LoanInfo.RateType;
+import nx.domain.loan.payment.AbstractPaymentTable;
+import nx.domain.loan.payment.ConstantPaymentSimple;
+import nx.domain.loan.payment.ConstantPaymentStandard;
+import nx.domain.loan.payment.EqualPrincipalPayment;
+
+/**
+ * 計測対象の償還表
+ */
+public enum Engine {
+    STANDARD,
+    SIMPLE,
+    EQUAL_PRINCIPAL;
+
+    /**
+     * 3000万円、年利1%の借り入れ条件
+     *
+     * @param years 返済期間(年)
+     */
+    public LoanInfo loanInfo(final int years) {
+        final PaymentType paymentType = (this == EQUAL_PRINCIPAL)
+                ? PaymentType.EQUAL_PRINCIPAL_PAYMENT : PaymentType.CONSTANT_PAYMENT;
+        return new LoanInfo(30_000_000, years, 0, 0.01, RateType.VARIABLE, paymentType, PrepaymentType.AMOUNT);
+    }
+
+    public AbstractPaymentTable create(final LoanInfo loanInfo) {
+        switch (this) {
+        case STANDARD:
+            return new ConstantPaymentStandard(loanInfo);
+        case SIMPLE:
+            return new ConstantPaymentSimple(loanInfo);
+        default:
+            return new EqualPrincipalPayment(loanInfo);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package nx.domain.loan.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import nx.domain.loan.model.LoanInfo;
+import nx.domain.loan.payment.AbstractPaymentTable;
+
+/**
+ * 1つの償還表から繰り上げ返済の条件を変えた複数の償還表を作成<br>
+ * fork()で複製する場合と、償還表を作成し直して変更を再度適用する場合を比較する
+ */
+@State(Scope.Thread)
+public class ForkBenchmark {
+    static final int BRANCHES = 100;
+
+    @Param({"10", "35", "50"})
+    int years;
+
+    @Param({"STANDARD", "SIMPLE", "EQUAL_PRINCIPAL"})
+    Engine engine;
+
+    @Param({"EARLY", "MIDDLE", "LATE"})
+    EditBenchmark.Position position;
+
+    LoanInfo loanInfo;
+    AbstractPaymentTable base;
+    int n;
+
+    @Setup
+    public void setup() {
+        loanInfo = engine.loanInfo(years);
+        n = position.installment(loanInfo.installments);
+        base = engine.create(loanInfo);
+        base.changeRate(12, 0.015);
+    }
+
+    @Benchmark
+    public long fork() {
+        long total = 0;
+        for (int i = 1; i <= BRANCHES; i++) {
+            final AbstractPaymentTable branch = base.fork();
+            branch.prepayment(n, i * 10_000L);
+            total += branch.getResult().getTotal();
+        }
+        return total;
+    }
+
+    @Benchmark
+    public long rebuild() {
+        long total = 0;
+        for (int i = 1; i <= BRANCHES; i++) {
+            final AbstractPaymentTable branch = engine.create(loanInfo);
+            branch.changeRate(12, 0.015);
+            branch.prepayment(n, i * 10_000L);
+            total += branch.getResult().getTotal();
+        }
+        return total;
+    }
+}
@@ -0,0 +1,57 @@
+package nx.domain.loan.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import nx.domain.loan.model.PaymentRecord;
+import nx.domain.loan.payment.AbstractPaymentTable;
+
+/**
+ * 償還表の走査
+ */
+@State(Scope.Thread)
+public class IterationBenchmark {
+    @Param({"10", "35", "50"})
+    int years;
+
+    @Param({"STANDARD", "SIMPLE", "EQUAL_PRINCIPAL"})
+    Engine engine;
+
+    AbstractPaymentTable table;
+
+    @Setup
+    public void setup() {
+        table = engine.create(engine.loanInfo(years));
+    }
+
+    @Benchmark
+    public long iterator() {
+        long interest = 0;
+        for (PaymentRecord r : table) {
+            interest += r.getInterest();
+        }
+        return interest;
+    }
+
+    @Benchmark
+    public long get() {
+        long interest = 0;
+        for (int i = 0; i < table.size(); i++) {
+            interest += table.get(i).getInterest();
+        }
+        return interest;
+    }
+
+    @Benchmark
+    public long stream() {
+        return table.stream().mapToLong(PaymentRecord::getInterest).sum();
+    }
+
+    @Benchmark
+    public long interestStream() {
+        return table.interestStream().sum();
+    }
+}
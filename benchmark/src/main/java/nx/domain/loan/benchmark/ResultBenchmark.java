@@ -0,0 +1,69 @@
+package nx.domain.loan.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import nx.domain.loan.model.LoanInfo;
+import nx.domain.loan.model.LoanResult;
+import nx.domain.loan.payment.AbstractPaymentTable;
+import nx.domain.loan.payment.ScheduleGenerator;
+
+/**
+ * 償還表の集計
+ */
+@State(Scope.Thread)
+public class ResultBenchmark {
+    @Param({"10", "35", "50"})
+    int years;
+
+    @Param({"STANDARD", "SIMPLE", "EQUAL_PRINCIPAL"})
+    Engine engine;
+
+    LoanInfo loanInfo;
+    AbstractPaymentTable table;
+    double lastRate;
+
+    @Setup
+    public void setup() {
+        loanInfo = engine.loanInfo(years);
+        table = engine.create(loanInfo);
+        table.prepayment(24, 1_000_000);
+    }
+
+    /**
+     * 変更のない償還表の集計
+     */
+    @Benchmark
+    public LoanResult getResult() {
+        return table.getResult();
+    }
+
+    /**
+     * 1年分の集計
+     */
+    @Benchmark
+    public LoanResult getResultRange() {
+        return table.getResult(12, 24);
+    }
+
+    /**
+     * 最終回を変更した直後の集計
+     */
+    @Benchmark
+    public LoanResult getResultAfterEdit() {
+        lastRate = (lastRate == 0.01) ? 0.02 : 0.01;
+        table.changeRate(loanInfo.installments - 1, lastRate);
+        return table.getResult();
+    }
+
+    /**
+     * 償還表を作らない集計
+     */
+    @Benchmark
+    public LoanResult summarize() {
+        return ScheduleGenerator.summarize(loanInfo);
+    }
+}
@@ -0,0 +1,51 @@
+package nx.domain.loan.sample;
+
+import java.net.InetSocketAddress;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Options;
+
+import nx.domain.loan.server.ScheduleServer;
+
+/**
+ * 集計結果と償還表をHTTPで返すサーバを起動
+ *
+ * 実行方法
+ * java -jar server/target/calculation-server.jar -p 8080
+ * curl 'http://localhost:8080/summary?amount=30000000&amp;years=35&amp;rate=0.01'
+ */
+public class CalculationServer {
+    private static int getInt(final CommandLine options, final char option, final int defaultValue) {
+        final String value = options.getOptionValue(option);
+        if (value == null)
+            return defaultValue;
+        else
+            return Integer.parseInt(value);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new Options()
+        .addOption("p", true, "ポート番号")
+        .addOption("c", true, "キャッシュする応答の数")
+        .addOption("n", true, "同時に処理する要求の数");
+        CommandLineParser parser = new DefaultParser();
+        CommandLine cmd = null;
+        try {
+            cmd = parser.parse(options, args);
+        }
+        catch (Exception e) {
+            HelpFormatter formatter = new HelpFormatter();
+            formatter.printHelp("CalculationServer", options);
+            return;
+        }
+
+        final ScheduleServer server = new ScheduleServer(new InetSocketAddress(getInt(cmd, 'p', 8080)),
+                getInt(cmd, 'c', 10_000), getInt(cmd, 'n', Runtime.getRuntime().availableProcessors() * 16));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> server.stop(1)));
+        server.start();
+        System.out.format("%s で待ち受け中\n", server.getAddress());
+    }
+}
@@ -0,0 +1,40 @@
+package nx.domain.loan.server;
+
+import nx.domain.loan.model.LoanInfo;
+
+/**
+ * 応答のキャッシュと同時実行中の要求の集約に使うキー<br>
+ * 要求の種類と借り入れの初期条件が等しければ応答も等しい
+ */
+final class RequestKey {
+    /**
+     * 要求の種類
+     */
+    enum Kind {
+        SUMMARY,
+        SCHEDULE
+    }
+
+    final Kind kind;
+    final LoanInfo loanInfo;
+
+    RequestKey(final Kind kind, final LoanInfo loanInfo) {
+        this.kind = kind;
+        this.loanInfo = loanInfo;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof RequestKey))
+            return false;
+        final RequestKey other = (RequestKey)o;
+        return kind == other.kind && loanInfo.equals(other.loanInfo);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * kind.hashCode() + loanInfo.hashCode();
+    }
+}
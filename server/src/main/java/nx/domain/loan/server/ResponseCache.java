@@ -0,0 +1,65 @@
+package nx.domain.loan.server;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 作成済みの応答本文をキャッシュ<br>
+ * 上限を超えた場合は最も長く参照されていないものを削除する
+ */
+final class ResponseCache {
+    private final LinkedHashMap<RequestKey, byte[]> responses;
+    private long hitCount;
+    private long missCount;
+
+    /**
+     * @param capacity キャッシュする応答の最大数
+     */
+    ResponseCache(final int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("bad capacity: " + capacity);
+        this.responses = new LinkedHashMap<RequestKey, byte[]>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<RequestKey, byte[]> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * @return キャッシュした応答本文。なければnull
+     */
+    synchronized byte[] get(final RequestKey key) {
+        final byte[] body = responses.get(key);
+        if (body == null)
+            missCount++;
+        else
+            hitCount++;
+        return body;
+    }
+
+    /**
+     * 再確認用。参照回数を数えない
+     */
+    synchronized byte[] peek(final RequestKey key) {
+        return responses.get(key);
+    }
+
+    synchronized void put(final RequestKey key, final byte[] body) {
+        responses.put(key, body);
+    }
+
+    synchronized int size() {
+        return responses.size();
+    }
+
+    synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    synchronized long getMissCount() {
+        return missCount;
+    }
+}
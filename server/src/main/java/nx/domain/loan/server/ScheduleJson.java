@@ -0,0 +1,94 @@
+package nx.domain.loan.server;
+
+import java.nio.charset.StandardCharsets;
+
+import nx.domain.loan.model.LoanInfo;
+import nx.domain.loan.model.LoanResult;
+import nx.domain.loan.model.PaymentRecord;
+import nx.domain.loan.payment.AbstractPaymentTable;
+
+/**
+ * 集計結果と償還表をJSONに変換
+ */
+final class ScheduleJson {
+    private ScheduleJson() {
+    }
+
+    /**
+     * @return {"loan":{...},"result":{...}}
+     */
+    static byte[] summary(final LoanInfo loanInfo, final LoanResult result) {
+        final StringBuilder sb = new StringBuilder(256);
+        sb.append('{');
+        loan(sb, loanInfo);
+        sb.append(',');
+        result(sb, result);
+        sb.append("}\n");
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return {"loan":{...},"result":{...},"rows":[{...},...]}
+     */
+    static byte[] schedule(final AbstractPaymentTable table) {
+        final StringBuilder sb = new StringBuilder(256 + table.size() * 160);
+        sb.append('{');
+        loan(sb, table.getLoanInfo());
+        sb.append(',');
+        result(sb, table.getResult());
+        sb.append(",\"rows\":[");
+        for (PaymentRecord r : table) {
+            if (r.getIndex() > 0)
+                sb.append(',');
+            sb.append("{\"n\":").append(r.getIndex() + 1)
+              .append(",\"rate\":").append(r.getRate())
+              .append(",\"principal\":").append(r.getPrincipal())
+              .append(",\"interest\":").append(r.getInterest())
+              .append(",\"total\":").append(r.getTotal())
+              .append(",\"balance\":").append(r.getBalance())
+              .append(",\"accruedInterestPaid\":").append(r.getAccruedInterestPaid())
+              .append(",\"accruedInterestBalance\":").append(r.getAccruedInterestBalance())
+              .append('}');
+        }
+        sb.append("]}\n");
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return {"error":"..."}
+     */
+    static byte[] error(final String message) {
+        final StringBuilder sb = new StringBuilder("{\"error\":\"");
+        for (int i = 0; i < message.length(); i++) {
+            final char c = message.charAt(i);
+            if (c == '"' || c == '\\')
+                sb.append('\\').append(c);
+            else if (c < 0x20)
+                sb.append(' ');
+            else
+                sb.append(c);
+        }
+        sb.append("\"}\n");
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void loan(final StringBuilder sb, final LoanInfo loanInfo) {
+        sb.append("\"loan\":{\"amount\":").append(loanInfo.amount)
+          .append(",\"years\":").append(loanInfo.years)
+          .append(",\"months\":").append(loanInfo.months)
+          .append(",\"installments\":").append(loanInfo.installments)
+          .append(",\"rate\":").append(loanInfo.annualRate)
+          .append(",\"rateType\":\"").append(loanInfo.rateType.name())
+          .append("\",\"paymentType\":\"").append(loanInfo.paymentType.name())
+          .append("\",\"prepaymentType\":\"").append(loanInfo.prepaymentType.name())
+          .append("\"}");
+    }
+
+    private static void result(final StringBuilder sb, final LoanResult result) {
+        sb.append("\"result\":{\"principal\":").append(result.getPrincipal())
+          .append(",\"interest\":").append(result.getInterest())
+          .append(",\"total\":").append(result.getTotal())
+          .append(",\"balance\":").append(result.getBalance())
+          .append('}');
+    }
+}
@@ -0,0 +1,313 @@
+package nx.domain.loan.server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import nx.domain.loan.model.LoanInfo;
+import nx.domain.loan.model.LoanInfo.PaymentType;
+import nx.domain.loan.model.LoanInfo.PrepaymentType;
+import nx.domain.loan.model.LoanInfo.RateType;
+import nx.domain.loan.payment.AbstractPaymentTable;
+import nx.domain.loan.payment.ScheduleGenerator;
+
+/**
+ * 集計結果と償還表をHTTPで返すサーバ<br>
+ * JDKのcom.sun.net.httpserverだけを使い、外部のライブラリに依存しない。
+ * <ul>
+ * <li>GET /summary?amount=30000000&amp;years=35&amp;rate=0.01 - 集計結果</li>
+ * <li>GET /schedule?amount=30000000&amp;years=35&amp;rate=0.01 - 集計結果と全返済回</li>
+ * </ul>
+ * パラメータはamount、years、months、rate、rateType、paymentType、prepaymentType。
+ * months以降は省略でき、それぞれ0、VARIABLE、CONSTANT_PAYMENT、DURATIONになる。
+ * 応答はJSONで、作成した応答本文は借り入れ条件ごとにキャッシュする。
+ * キャッシュにない同じ条件の要求が同時に届いた場合は、最初の要求の計算結果を他の要求でも使う。
+ * 同時に処理する要求の数が上限に達している場合は、待たせずに503を返す。
+ * 要求はJava 21以降では仮想スレッドで、それより前のJavaではスレッドプールで処理する
+ */
+public class ScheduleServer {
+    /**
+     * 受け付ける返済回数の上限
+     */
+    public static final int MAX_INSTALLMENTS = 1200;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final ResponseCache cache;
+    private final ConcurrentHashMap<RequestKey, CompletableFuture<byte[]>> inFlight =
+            new ConcurrentHashMap<RequestKey, CompletableFuture<byte[]>>();
+    private final Semaphore permits;
+    private final LongAdder computeCount = new LongAdder();
+    private final LongAdder coalescedCount = new LongAdder();
+    private final LongAdder rejectedCount = new LongAdder();
+
+    /**
+     * @param address 待ち受けるアドレス。ポート番号が0の場合は空いているポートを使う
+     * @param cacheCapacity キャッシュする応答の最大数
+     * @param maxConcurrent 同時に処理する要求の最大数
+     */
+    public ScheduleServer(final InetSocketAddress address, final int cacheCapacity, final int maxConcurrent) throws IOException {
+        if (address == null)
+            throw new IllegalArgumentException("address cannot be null");
+        if (maxConcurrent <= 0)
+            throw new IllegalArgumentException("bad maxConcurrent: " + maxConcurrent);
+        this.cache = new ResponseCache(cacheCapacity);
+        this.permits = new Semaphore(maxConcurrent);
+        this.executor = newExecutor();
+        this.server = HttpServer.create(address, 0);
+        server.createContext("/summary", new Handler(RequestKey.Kind.SUMMARY));
+        server.createContext("/schedule", new Handler(RequestKey.Kind.SCHEDULE));
+        server.setExecutor(executor);
+    }
+
+    /**
+     * 仮想スレッドが使える場合は要求ごとに仮想スレッドを作るExecutor、
+     * 使えない場合はデーモンスレッドのスレッドプール。
+     * Java 1.8でもコンパイルできるようにリフレクションで呼び出す
+     */
+    private static ExecutorService newExecutor() {
+        try {
+            final Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService)method.invoke(null);
+        }
+        catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(r -> {
+                final Thread thread = new Thread(r, "schedule-server");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * 要求の受け付けを開始
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * 要求の受け付けを終了
+     *
+     * @param delay 処理中の要求の終了を待つ最大の秒数
+     */
+    public void stop(final int delay) {
+        server.stop(delay);
+        executor.shutdownNow();
+    }
+
+    /**
+     * @return 待ち受けているアドレス
+     */
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    /**
+     * @return 応答本文を計算した回数
+     */
+    public long getComputeCount() {
+        return computeCount.sum();
+    }
+
+    /**
+     * @return 同じ条件の処理中の要求の結果を使った回数
+     */
+    public long getCoalescedCount() {
+        return coalescedCount.sum();
+    }
+
+    /**
+     * @return 同時に処理する要求の数が上限に達していたため503を返した回数
+     */
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    /**
+     * @return キャッシュにあった回数
+     */
+    public long getCacheHitCount() {
+        return cache.getHitCount();
+    }
+
+    /**
+     * 応答本文を取得<br>
+     * キャッシュになければ計算する。同じ条件を計算中の要求があればその結果を待つ
+     */
+    byte[] response(final RequestKey key) {
+        final byte[] cached = cache.get(key);
+        if (cached != null)
+            return cached;
+
+        final CompletableFuture<byte[]> future = new CompletableFuture<byte[]>();
+        final CompletableFuture<byte[]> running = inFlight.putIfAbsent(key, future);
+        if (running != null) {
+            coalescedCount.increment();
+            return join(running);
+        }
+        try {
+            // 直前に他の要求が計算を終えてキャッシュに入れた場合
+            byte[] body = cache.peek(key);
+            if (body == null) {
+                body = compute(key);
+                cache.put(key, body);
+            }
+            future.complete(body);
+            return body;
+        }
+        catch (RuntimeException | Error e) {
+            future.completeExceptionally(e);
+            throw e;
+        }
+        finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    private byte[] compute(final RequestKey key) {
+        computeCount.increment();
+        if (key.kind == RequestKey.Kind.SUMMARY)
+            return ScheduleJson.summary(key.loanInfo, ScheduleGenerator.summarize(key.loanInfo));
+        else
+            return ScheduleJson.schedule(AbstractPaymentTable.create(key.loanInfo));
+    }
+
+    private static byte[] join(final CompletableFuture<byte[]> future) {
+        try {
+            return future.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted", e);
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException)e.getCause();
+            if (e.getCause() instanceof Error)
+                throw (Error)e.getCause();
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * 問い合わせ文字列から借り入れ条件を作成
+     *
+     * @param query URLの問い合わせ部分。nullの場合は空として扱う
+     */
+    static LoanInfo parse(final String query) {
+        final Map<String, String> params = new HashMap<String, String>();
+        if (query != null) {
+            for (String pair : query.split("&")) {
+                if (pair.isEmpty())
+                    continue;
+                final int eq = pair.indexOf('=');
+                if (eq < 0)
+                    throw new IllegalArgumentException("bad parameter: " + pair);
+                params.put(decode(pair.substring(0, eq)), decode(pair.substring(eq + 1)));
+            }
+        }
+        final long amount = Long.parseLong(required(params, "amount"));
+        final int years = Integer.parseInt(optional(params, "years", "0"));
+        final int months = Integer.parseInt(optional(params, "months", "0"));
+        final double rate = Double.parseDouble(required(params, "rate"));
+        if (years < 0 || months < 0 || years * 12L + months > MAX_INSTALLMENTS)
+            throw new IllegalArgumentException("bad installments: " + years + "/" + months);
+        if (Double.isNaN(rate) || Double.isInfinite(rate))
+            throw new IllegalArgumentException("bad rate: " + rate);
+        return new LoanInfo(amount, years, months, rate,
+                RateType.valueOf(optional(params, "rateType", RateType.VARIABLE.name())),
+                PaymentType.valueOf(optional(params, "paymentType", PaymentType.CONSTANT_PAYMENT.name())),
+                PrepaymentType.valueOf(optional(params, "prepaymentType", PrepaymentType.DURATION.name())));
+    }
+
+    private static String required(final Map<String, String> params, final String name) {
+        final String value = params.get(name);
+        if (value == null)
+            throw new IllegalArgumentException(name + " is required");
+        return value;
+    }
+
+    private static String optional(final Map<String, String> params, final String name, final String defaultValue) {
+        final String value = params.get(name);
+        return (value == null) ? defaultValue : value;
+    }
+
+    private static String decode(final String s) {
+        try {
+            return URLDecoder.decode(s, "UTF-8");
+        }
+        catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private final class Handler implements HttpHandler {
+        private final RequestKey.Kind kind;
+
+        Handler(final RequestKey.Kind kind) {
+            this.kind = kind;
+        }
+
+        @Override
+        public void handle(final HttpExchange exchange) throws IOException {
+            try {
+                if (!"GET".equals(exchange.getRequestMethod())) {
+                    exchange.getResponseHeaders().set("Allow", "GET");
+                    send(exchange, 405, ScheduleJson.error("method not allowed"));
+                    return;
+                }
+                if (!permits.tryAcquire()) {
+                    rejectedCount.increment();
+                    exchange.getResponseHeaders().set("Retry-After", "1");
+                    send(exchange, 503, ScheduleJson.error("busy"));
+                    return;
+                }
+                try {
+                    final LoanInfo loanInfo;
+                    try {
+                        loanInfo = parse(exchange.getRequestURI().getRawQuery());
+                    }
+                    catch (IllegalArgumentException e) {
+                        send(exchange, 400, ScheduleJson.error(String.valueOf(e.getMessage())));
+                        return;
+                    }
+                    send(exchange, 200, response(new RequestKey(kind, loanInfo)));
+                }
+                finally {
+                    permits.release();
+                }
+            }
+            catch (RuntimeException e) {
+                send(exchange, 500, ScheduleJson.error(e.toString()));
+            }
+            finally {
+                exchange.close();
+            }
+        }
+
+        private void send(final HttpExchange exchange, final int status, final byte[] body) throws IOException {
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+            exchange.sendResponseHeaders(status, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package nx.domain.loan.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import nx.domain.loan.model.LoanInfo;
+import nx.domain.loan.model.LoanInfo.PaymentType;
+import nx.domain.loan.model.LoanInfo.PrepaymentType;
+import nx.domain.loan.model.LoanInfo.RateType;
+import nx.domain.loan.model.LoanResult;
+import nx.domain.loan.payment.ScheduleGenerator;
+
+public class ScheduleServerTest {
+    private ScheduleServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new ScheduleServer(new InetSocketAddress("127.0.0.1", 0), 100, 64);
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    private HttpURLConnection open(final String path) throws IOException {
+        final URL url = new URL("http://127.0.0.1:" + server.getAddress().getPort() + path);
+        return (HttpURLConnection)url.openConnection();
+    }
+
+    private String get(final String path) throws IOException {
+        final HttpURLConnection connection = open(path);
+        assertEquals(200, connection.getResponseCode());
+        try (InputStream in = connection.getInputStream()) {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte buffer[] = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) > 0)
+                out.write(buffer, 0, n);
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    @Test
+    public void testSummary() throws IOException {
+        final String body = get("/summary?amount=30000000&years=35&rate=0.01");
+        final LoanResult result = ScheduleGenerator.summarize(new LoanInfo(30_000_000, 35, 0, 0.01,
+                RateType.VARIABLE, PaymentType.CONSTANT_PAYMENT, PrepaymentType.DURATION));
+        assertTrue(body, body.contains("\"interest\":" + result.getInterest() + ","));
+        assertTrue(body, body.contains("\"installments\":420,"));
+
+        assertEquals(body, get("/summary?amount=30000000&years=35&months=0&rate=0.01"));
+        assertEquals(1, server.getComputeCount());
+        assertEquals(1, server.getCacheHitCount());
+    }
+
+    @Test
+    public void testSchedule() throws IOException {
+        final String body = get("/schedule?amount=1200000&months=12&rate=0.012&paymentType=EQUAL_PRINCIPAL_PAYMENT");
+        assertTrue(body, body.contains("{\"n\":1,\"rate\":0.012,\"principal\":100000,\"interest\":1200,"));
+        assertTrue(body, body.contains("{\"n\":12,"));
+        assertTrue(body, !body.contains("{\"n\":13,"));
+    }
+
+    @Test
+    public void testBadRequest() throws IOException {
+        assertEquals(400, open("/summary?amount=30000000&years=35").getResponseCode());
+        assertEquals(400, open("/summary?amount=30000000&years=200&rate=0.01").getResponseCode());
+        assertEquals(400, open("/summary?amount=30000000&years=35&rate=0.01&paymentType=X").getResponseCode());
+        final HttpURLConnection post = open("/summary?amount=30000000&years=35&rate=0.01");
+        post.setRequestMethod("POST");
+        assertEquals(405, post.getResponseCode());
+        assertEquals(0, server.getComputeCount());
+    }
+
+    /**
+     * 同じ条件の同時の要求は1回だけ計算する
+     */
+    @Test
+    public void testCoalescing() throws Exception {
+        final ExecutorService pool = Executors.newFixedThreadPool(16);
+        try {
+            final List<Future<String>> futures = new ArrayList<Future<String>>();
+            for (int i = 0; i < 32; i++)
+                futures.add(pool.submit(() -> get("/schedule?amount=50000000&years=50&rate=0.02")));
+            final String body = futures.get(0).get();
+            for (Future<String> f : futures)
+                assertEquals(body, f.get());
+        }
+        finally {
+            pool.shutdown();
+        }
+        assertEquals(1, server.getComputeCount());
+    }
+}
@@ -0,0 +1,112 @@
+package nx.domain.loan.io;
+
+import java.nio.ByteBuffer;
+
+import nx.domain.loan.model.PaymentColumns;
+
+/**
+ * ScheduleStoreのファイルを割り当てたメモリ上の償還表を直接参照する読み取り専用の配列<br>
+ * 項目ごとにstride回分の領域が連続しており、値はScheduleColumnの順に並ぶ
+ */
+final class MappedPaymentColumns extends PaymentColumns {
+    private final ByteBuffer buffer;
+    private final int base;
+    private final int stride;
+
+    /**
+     * @param buffer 割り当てたメモリ
+     * @param base 最初の項目の位置
+     * @param stride 項目ごとの返済回数分の領域
+     * @param size 返済回数
+     */
+    MappedPaymentColumns(final ByteBuffer buffer, final int base, final int stride, final int size) {
+        super(size, false);
+        this.buffer = buffer;
+        this.base = base;
+        this.stride = stride;
+    }
+
+    private int offset(final ScheduleColumn column, final int n) {
+        if (n < 0 || n >= size())
+            throw new IndexOutOfBoundsException();
+        return base + ((column.ordinal() * stride + n) << 3);
+    }
+
+    @Override
+    public double getRate(final int n) { return buffer.getDouble(offset(ScheduleColumn.RATE, n)); }
+
+    @Override
+    public long getPrincipal(final int n) { return buffer.getLong(offset(ScheduleColumn.PRINCIPAL, n)); }
+
+    @Override
+    public long getInterest(final int n) { return buffer.getLong(offset(ScheduleColumn.INTEREST, n)); }
+
+    @Override
+    public long getTotal(final int n) { return buffer.getLong(offset(ScheduleColumn.TOTAL, n)); }
+
+    @Override
+    public long getBalance(final int n) { return buffer.getLong(offset(ScheduleColumn.BALANCE, n)); }
+
+    @Override
+    public long getPrepayment(final int n) { return buffer.getLong(offset(ScheduleColumn.PREPAYMENT, n)); }
+
+    @Override
+    public long getAccruedInterestNew(final int n) { return buffer.getLong(offset(ScheduleColumn.ACCRUED_INTEREST_NEW, n)); }
+
+    @Override
+    public long getAccruedInterestPaid(final int n) { return buffer.getLong(offset(ScheduleColumn.ACCRUED_INTEREST_PAID, n)); }
+
+    @Override
+    public long getAccruedInterestBalance(final int n) { return buffer.getLong(offset(ScheduleColumn.ACCRUED_INTEREST_BALANCE, n)); }
+
+    @Override
+    public double[] getRates() {
+        final double values[] = new double[size()];
+        for (int n = 0; n < values.length; n++)
+            values[n] = getRate(n);
+        return values;
+    }
+
+    @Override
+    public long[] getPrincipals() { return getLongs(ScheduleColumn.PRINCIPAL); }
+
+    @Override
+    public long[] getInterests() { return getLongs(ScheduleColumn.INTEREST); }
+
+    @Override
+    public long[] getTotals() { return getLongs(ScheduleColumn.TOTAL); }
+
+    @Override
+    public long[] getBalances() { return getLongs(ScheduleColumn.BALANCE); }
+
+    @Override
+    public long[] getPrepayments() { return getLongs(ScheduleColumn.PREPAYMENT); }
+
+    private long[] getLongs(final ScheduleColumn column) {
+        final long values[] = new long[size()];
+        final int start = offset(column, 0);
+        for (int n = 0; n < values.length; n++)
+            values[n] = buffer.getLong(start + (n << 3));
+        return values;
+    }
+
+    /**
+     * ヒープ上の変更可能な配列にコピー
+     */
+    @Override
+    public PaymentColumns fork() {
+        final PaymentColumns columns = new PaymentColumns(size());
+        for (int n = 0; n < size(); n++) {
+            columns.setRate(n, getRate(n));
+            columns.setPrincipal(n, getPrincipal(n));
+            columns.setInterest(n, getInterest(n));
+            columns.setTotal(n, getTotal(n));
+            columns.setBalance(n, getBalance(n));
+            columns.setPrepayment(n, getPrepayment(n));
+            columns.setAccruedInterestNew(n, getAccruedInterestNew(n));
+            columns.setAccruedInterestPaid(n, getAccruedInterestPaid(n));
+            columns.setAccruedInterestBalance(n, getAccruedInterestBalance(n));
+        }
+        return columns;
+    }
+}
@@ -0,0 +1,133 @@
+package nx.domain.loan.io;
+
+import nx.domain.loan.model.PaymentColumns;
+import nx.domain.loan.model.PaymentRecord;
+
+/**
+ * 保存形式での償還表の項目<br>
+ * 保存形式では項目ごとに区切られており、必要な項目だけを読み込める
+ */
+public enum ScheduleColumn {
+    /**
+     * 利率
+     */
+    RATE,
+    /**
+     * 元金
+     */
+    PRINCIPAL,
+    /**
+     * 利息
+     */
+    INTEREST,
+    /**
+     * 支払額合計
+     */
+    TOTAL,
+    /**
+     * 元金残高
+     */
+    BALANCE,
+    /**
+     * 繰上額
+     */
+    PREPAYMENT,
+    /**
+     * 新規発生未払い利息
+     */
+    ACCRUED_INTEREST_NEW,
+    /**
+     * 充当未払い利息
+     */
+    ACCRUED_INTEREST_PAID,
+    /**
+     * 未払い利息残高
+     */
+    ACCRUED_INTEREST_BALANCE;
+
+    @Override
+    public String toString() {
+        switch (this.ordinal()) {
+        case 0:
+            return "利率";
+        case 1:
+            return "元金";
+        case 2:
+            return "利息";
+        case 3:
+            return "支払額";
+        case 4:
+            return "元金残高";
+        case 5:
+            return "繰上額";
+        case 6:
+            return "新規未払い利息";
+        case 7:
+            return "充当未払い利息";
+        case 8:
+            return "未払い利息残高";
+        default:
+            return "エラー";
+        }
+    }
+
+    /**
+     * 金額の項目の値。RATEには使用しない
+     */
+    long get(final PaymentRecord r) {
+        switch (this) {
+        case PRINCIPAL:
+            return r.getPrincipal();
+        case INTEREST:
+            return r.getInterest();
+        case TOTAL:
+            return r.getTotal();
+        case BALANCE:
+            return r.getBalance();
+        case PREPAYMENT:
+            return r.getPrepayment();
+        case ACCRUED_INTEREST_NEW:
+            return r.getAccruedInterestNew();
+        case ACCRUED_INTEREST_PAID:
+            return r.getAccruedInterestPaid();
+        case ACCRUED_INTEREST_BALANCE:
+            return r.getAccruedInterestBalance();
+        default:
+            throw new IllegalArgumentException("not an amount: " + name());
+        }
+    }
+
+    /**
+     * 金額の項目のn回目に値を設定。RATEには使用しない
+     */
+    void set(final PaymentColumns columns, final int n, final long value) {
+        switch (this) {
+        case PRINCIPAL:
+            columns.setPrincipal(n, value);
+            break;
+        case INTEREST:
+            columns.setInterest(n, value);
+            break;
+        case TOTAL:
+            columns.setTotal(n, value);
+            break;
+        case BALANCE:
+            columns.setBalance(n, value);
+            break;
+        case PREPAYMENT:
+            columns.setPrepayment(n, value);
+            break;
+        case ACCRUED_INTEREST_NEW:
+            columns.setAccruedInterestNew(n, value);
+            break;
+        case ACCRUED_INTEREST_PAID:
+            columns.setAccruedInterestPaid(n, value);
+            break;
+        case ACCRUED_INTEREST_BALANCE:
+            columns.setAccruedInterestBalance(n, value);
+            break;
+        default:
+            throw new IllegalArgumentException("not an amount: " + name());
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package nx.domain.loan.io;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.List;
+
+import nx.domain.loan.model.LoanEvent;
+import nx.domain.loan.model.LoanInfo;
+import nx.domain.loan.model.PaymentColumns;
+import nx.domain.loan.payment.AbstractPaymentTable;
+import nx.domain.loan.payment.ConstantPaymentSimple;
+import nx.domain.loan.payment.ConstantPaymentStandard;
+import nx.domain.loan.payment.EqualPrincipalPayment;
+
+/**
+ * 償還表の保存形式の定数と可変長整数の符号化<br>
+ * <pre>
+ * 償還表1件
+ *   "LNSC" 形式の版数(1バイト) 償還表の種類(1バイト)
+ *   借入額 年数 月数 (可変長) 年利(8バイト) 金利タイプ 返済方式 繰り上げ返済方式 (各1バイト)
+ *   返済回数(可変長)
+ *   変更履歴の件数(可変長) 変更ごとに 種別(1バイト) 返済回(可変長) 繰上額(可変長)または利率(8バイト)
+ *   項目数(可変長) 項目ごとに 項目番号(1バイト) データ長(可変長) データ
+ * 利率のデータ
+ *   同じ利率が続く回数(可変長) 利率(8バイト) の繰り返し
+ * 金額のデータ
+ *   前回との差をZigZag符号化した可変長整数の繰り返し
+ * </pre>
+ * 可変長整数は下位から7ビットずつ、続きがある場合は最上位ビットを1にして格納する。
+ * 読み込み側は知らない項目番号のデータを読み飛ばす
+ */
+final class ScheduleFormat {
+    static final byte MAGIC[] = { 'L', 'N', 'S', 'C' };
+    static final int VERSION = 1;
+
+    static final int ENGINE_STANDARD        = 0;
+    static final int ENGINE_SIMPLE          = 1;
+    static final int ENGINE_EQUAL_PRINCIPAL = 2;
+
+    private ScheduleFormat() {
+    }
+
+    /**
+     * 償還表の種類<br>
+     * 読み取り専用の償還表は、複製を作成せずに作成元の償還表のクラスで判定する
+     */
+    static int engine(final AbstractPaymentTable table) {
+        final Class<? extends AbstractPaymentTable> type = table.getEngineType();
+        if (ConstantPaymentSimple.class.isAssignableFrom(type))
+            return ENGINE_SIMPLE;
+        else if (EqualPrincipalPayment.class.isAssignableFrom(type))
+            return ENGINE_EQUAL_PRINCIPAL;
+        else
+            return ENGINE_STANDARD;
+    }
+
+    /**
+     * 償還表の種類に対応するクラス
+     */
+    static Class<? extends AbstractPaymentTable> engineType(final int engine) throws IOException {
+        switch (engine) {
+        case ENGINE_STANDARD:
+            return ConstantPaymentStandard.class;
+        case ENGINE_SIMPLE:
+            return ConstantPaymentSimple.class;
+        case ENGINE_EQUAL_PRINCIPAL:
+            return EqualPrincipalPayment.class;
+        default:
+            throw new IOException("bad engine: " + engine);
+        }
+    }
+
+    /**
+     * 保存した値から償還表を復元
+     */
+    static AbstractPaymentTable restore(final int engine, final LoanInfo loanInfo, final PaymentColumns columns,
+            final List<LoanEvent> history) throws IOException {
+        final Class<? extends AbstractPaymentTable> type = engineType(engine);
+        try {
+            return AbstractPaymentTable.restore(type, loanInfo, columns, history);
+        }
+        catch (IllegalArgumentException e) {
+            throw new IOException("bad engine: " + engine, e);
+        }
+    }
+
+    static void writeVarLong(final DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int)((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int)value);
+    }
+
+    static long readVarLong(final DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            final int b = in.readUnsignedByte();
+            value |= (long)(b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+        throw new IOException("bad varint");
+    }
+
+    static int readVarInt(final DataInput in) throws IOException {
+        final long value = readVarLong(in);
+        if (value < 0 || value > Integer.MAX_VALUE)
+            throw new IOException("bad length: " + value);
+        return (int)value;
+    }
+
+    static long zigzag(final long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long unzigzag(final long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
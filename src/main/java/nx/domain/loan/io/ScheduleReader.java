@@ -0,0 +1,269 @@
+package nx.domain.loan.io;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import nx.domain.loan.model.LoanEvent;
+import nx.domain.loan.model.LoanInfo;
+import nx.domain.loan.model.LoanInfo.PaymentType;
+import nx.domain.loan.model.LoanInfo.PrepaymentType;
+import nx.domain.loan.model.LoanInfo.RateType;
+import nx.domain.loan.model.PaymentColumns;
+import nx.domain.loan.payment.AbstractPaymentTable;
+
+/**
+ * ScheduleWriterで出力した償還表を順に読み込む<br>
+ * next()で次の償還表に進み、借り入れ条件と変更履歴を読み込む。
+ * 償還表全体はreadTable()で、特定の項目だけはreadColumn()で読み込む。
+ * readColumn()では指定した項目より前の項目を展開せずに読み飛ばす。
+ * 項目は保存順(ScheduleColumnの順)にしか読み込めない
+ *
+ * @see ScheduleWriter
+ */
+public class ScheduleReader implements Closeable {
+    private final DataInputStream in;
+
+    private int engine;
+    private LoanInfo loanInfo;
+    private List<LoanEvent> history;
+
+    /**
+     * 現在の償還表の未読の項目数。-1の場合はnext()を呼び出していない
+     */
+    private int remainingColumns = -1;
+
+    /**
+     * 現在の償還表で項目を読み込んだ場合はtrue
+     */
+    private boolean columnRead;
+
+    /**
+     * @param in 入力元
+     */
+    public ScheduleReader(final InputStream in) {
+        if (in == null)
+            throw new IllegalArgumentException("in cannot be null");
+        this.in = new DataInputStream(new BufferedInputStream(in));
+    }
+
+    /**
+     * 次の償還表に進み、借り入れ条件と変更履歴を読み込む<br>
+     * 現在の償還表の未読の項目は読み飛ばす
+     *
+     * @return 次の償還表がなければfalse
+     */
+    public boolean next() throws IOException {
+        while (remainingColumns > 0)
+            skipColumn();
+
+        final int first = in.read();
+        if (first < 0) {
+            remainingColumns = -1;
+            loanInfo = null;
+            history = null;
+            return false;
+        }
+        final byte magic[] = new byte[ScheduleFormat.MAGIC.length];
+        magic[0] = (byte)first;
+        in.readFully(magic, 1, magic.length - 1);
+        if (!Arrays.equals(magic, ScheduleFormat.MAGIC))
+            throw new IOException("bad format");
+        final int version = in.readUnsignedByte();
+        if (version != ScheduleFormat.VERSION)
+            throw new IOException("unsupported version: " + version);
+        engine = in.readUnsignedByte();
+        if (engine > ScheduleFormat.ENGINE_EQUAL_PRINCIPAL)
+            throw new IOException("bad engine: " + engine);
+
+        final long amount = ScheduleFormat.readVarLong(in);
+        final int years = ScheduleFormat.readVarInt(in);
+        final int months = ScheduleFormat.readVarInt(in);
+        final double annualRate = in.readDouble();
+        final RateType rateType = ordinal(RateType.values(), in.readUnsignedByte());
+        final PaymentType paymentType = ordinal(PaymentType.values(), in.readUnsignedByte());
+        final PrepaymentType prepaymentType = ordinal(PrepaymentType.values(), in.readUnsignedByte());
+        try {
+            loanInfo = new LoanInfo(amount, years, months, annualRate, rateType, paymentType, prepaymentType);
+        }
+        catch (IllegalArgumentException e) {
+            throw new IOException("bad loan info", e);
+        }
+        if (ScheduleFormat.readVarInt(in) != loanInfo.installments)
+            throw new IOException("bad installments");
+
+        final int events = ScheduleFormat.readVarInt(in);
+        final List<LoanEvent> list = new ArrayList<LoanEvent>(Math.min(events, 1024));
+        try {
+            for (int i = 0; i < events; i++) {
+                final LoanEvent.Type type = ordinal(LoanEvent.Type.values(), in.readUnsignedByte());
+                final int index = ScheduleFormat.readVarInt(in);
+                if (type == LoanEvent.Type.PREPAYMENT)
+                    list.add(LoanEvent.prepayment(index, ScheduleFormat.readVarLong(in)));
+                else
+                    list.add(LoanEvent.changeRate(index, in.readDouble()));
+            }
+        }
+        catch (IllegalArgumentException e) {
+            throw new IOException("bad history", e);
+        }
+        history = Collections.unmodifiableList(list);
+
+        remainingColumns = ScheduleFormat.readVarInt(in);
+        columnRead = false;
+        return true;
+    }
+
+    /**
+     * @return 現在の償還表の借り入れ条件
+     */
+    public LoanInfo getLoanInfo() {
+        checkCurrent();
+        return loanInfo;
+    }
+
+    /**
+     * @return 現在の償還表の変更履歴
+     */
+    public List<LoanEvent> getHistory() {
+        checkCurrent();
+        return history;
+    }
+
+    /**
+     * 現在の償還表の全項目を読み込んで償還表を作成<br>
+     * 償還表は計算し直さない。項目を読み込む前に呼び出すこと
+     *
+     * @return 保存時と同じ種類の償還表
+     */
+    public AbstractPaymentTable readTable() throws IOException {
+        checkCurrent();
+        if (columnRead)
+            throw new IllegalStateException("column already read");
+        columnRead = true;
+
+        final PaymentColumns columns = new PaymentColumns(loanInfo.installments);
+        while (remainingColumns > 0) {
+            remainingColumns--;
+            final int id = in.readUnsignedByte();
+            final int length = ScheduleFormat.readVarInt(in);
+            if (id >= ScheduleColumn.values().length) {
+                skip(length);
+                continue;
+            }
+            final ScheduleColumn column = ScheduleColumn.values()[id];
+            if (column == ScheduleColumn.RATE) {
+                final double rates[] = decodeRates();
+                for (int n = 0; n < rates.length; n++)
+                    columns.setRate(n, rates[n]);
+            }
+            else {
+                long value = 0;
+                for (int n = 0; n < loanInfo.installments; n++) {
+                    value += ScheduleFormat.unzigzag(ScheduleFormat.readVarLong(in));
+                    column.set(columns, n, value);
+                }
+            }
+        }
+
+        return ScheduleFormat.restore(engine, loanInfo, columns, history);
+    }
+
+    /**
+     * 現在の償還表の金額の項目を読み込む<br>
+     * 前の項目は展開せずに読み飛ばす
+     *
+     * @param column RATE以外の項目
+     * @return 全返済回の値
+     */
+    public long[] readColumn(final ScheduleColumn column) throws IOException {
+        if (column == null || column == ScheduleColumn.RATE)
+            throw new IllegalArgumentException("bad column: " + column);
+        seek(column);
+        final long values[] = new long[loanInfo.installments];
+        long value = 0;
+        for (int n = 0; n < values.length; n++) {
+            value += ScheduleFormat.unzigzag(ScheduleFormat.readVarLong(in));
+            values[n] = value;
+        }
+        return values;
+    }
+
+    /**
+     * 現在の償還表の利率を読み込む
+     *
+     * @return 全返済回の利率
+     */
+    public double[] readRates() throws IOException {
+        seek(ScheduleColumn.RATE);
+        return decodeRates();
+    }
+
+    /**
+     * 指定した項目のデータの先頭まで読み飛ばす
+     */
+    private void seek(final ScheduleColumn column) throws IOException {
+        checkCurrent();
+        columnRead = true;
+        while (remainingColumns > 0) {
+            remainingColumns--;
+            final int id = in.readUnsignedByte();
+            final int length = ScheduleFormat.readVarInt(in);
+            if (id == column.ordinal())
+                return;
+            skip(length);
+        }
+        throw new IllegalStateException("column not available: " + column.name());
+    }
+
+    private double[] decodeRates() throws IOException {
+        final double rates[] = new double[loanInfo.installments];
+        int n = 0;
+        while (n < rates.length) {
+            final int count = ScheduleFormat.readVarInt(in);
+            if (count == 0 || count > rates.length - n)
+                throw new IOException("bad rate run: " + count);
+            Arrays.fill(rates, n, n + count, in.readDouble());
+            n += count;
+        }
+        return rates;
+    }
+
+    private void skipColumn() throws IOException {
+        remainingColumns--;
+        in.readUnsignedByte();
+        skip(ScheduleFormat.readVarInt(in));
+    }
+
+    private void skip(int length) throws IOException {
+        while (length > 0) {
+            final int skipped = in.skipBytes(length);
+            if (skipped <= 0)
+                throw new EOFException();
+            length -= skipped;
+        }
+    }
+
+    private void checkCurrent() {
+        if (remainingColumns < 0)
+            throw new IllegalStateException("no current schedule");
+    }
+
+    private static <E> E ordinal(final E values[], final int ordinal) throws IOException {
+        if (ordinal >= values.length)
+            throw new IOException("bad ordinal: " + ordinal);
+        return values[ordinal];
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
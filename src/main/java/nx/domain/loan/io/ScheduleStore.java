@@ -0,0 +1,333 @@
+package nx.domain.loan.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import nx.domain.loan.model.LoanEvent;
+import nx.domain.loan.model.LoanInfo;
+import nx.domain.loan.model.LoanInfo.PaymentType;
+import nx.domain.loan.model.LoanInfo.PrepaymentType;
+import nx.domain.loan.model.LoanInfo.RateType;
+import nx.domain.loan.model.PaymentRecord;
+import nx.domain.loan.payment.AbstractPaymentTable;
+
+/**
+ * 多数の償還表をメモリマップトファイルに格納<br>
+ * 償還表はヒープ外のファイル上に固定長の領域ごとに格納する。各領域には借り入れ条件と、項目ごとに連続した値を置く。
+ * get()はファイルを割り当てたメモリを直接参照する読み取り専用の償還表を返すため、読み込みやコピーは発生しない。
+ * プロセスを再起動してもファイルを開くだけで参照できる。変更履歴は償還表ごとに作成時に指定した件数まで格納する。
+ * <pre>
+ * ヘッダ(64バイト) "LNST" 版数 stride 件数 変更履歴の最大件数 (各4バイト)
+ * 償還表ごとの領域(48 + 9 * stride * 8 + 変更履歴の最大件数 * 16バイト)
+ *   借入額(8) 年利(8) 年数(4) 月数(4) 返済回数(4) 金利タイプ(1) 返済方式(1) 繰り上げ返済方式(1) 償還表の種類(1)
+ *   変更履歴の件数(4) 予約(12)
+ *   ScheduleColumnの順に各項目stride回分
+ *   変更ごとに 返済回(4) 種別(1) 予約(3) 繰上額(8)または利率(8)
+ * </pre>
+ * get()は複数のスレッドから同時に呼び出すことができる
+ */
+public class ScheduleStore implements Closeable {
+    private static final byte MAGIC[] = { 'L', 'N', 'S', 'T' };
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 64;
+    private static final int META_SIZE = 48;
+    private static final int EVENT_SIZE = 16;
+    private static final int COUNT_OFFSET = 12;
+    private static final int MAX_EVENTS_OFFSET = 16;
+
+    /**
+     * 一度に割り当てるファイルの大きさの目安
+     */
+    private static final int SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer header;
+    private final int stride;
+    private final int maxEvents;
+    private final int slotSize;
+    private final int slotsPerSegment;
+
+    /**
+     * 割り当て済みの領域。追加時は配列ごと置き換える
+     */
+    private volatile ByteBuffer segments[] = new ByteBuffer[0];
+
+    /**
+     * 格納済みの償還表の数
+     */
+    private volatile int count;
+
+    private ScheduleStore(final FileChannel channel, final MappedByteBuffer header, final int stride, final int maxEvents,
+            final int count) {
+        this.channel = channel;
+        this.header = header;
+        this.stride = stride;
+        this.maxEvents = maxEvents;
+        this.slotSize = (int)slotSize(stride, maxEvents);
+        this.slotsPerSegment = Math.max(1, SEGMENT_SIZE / slotSize);
+        this.count = count;
+    }
+
+    /**
+     * 償還表1件の領域の大きさ<br>
+     * 領域内の位置はintで扱うため、Integer.MAX_VALUEを超える場合は格納できない
+     *
+     * @param stride 格納できる償還表の最大の返済回数
+     * @param maxEvents 格納できる変更履歴の最大件数
+     */
+    private static long slotSize(final int stride, final int maxEvents) {
+        return META_SIZE + (long)ScheduleColumn.values().length * stride * 8 + (long)maxEvents * EVENT_SIZE;
+    }
+
+    /**
+     * 新しいファイルを作成<br>
+     * 既存のファイルは上書きする。変更履歴は返済回数と同じ件数まで格納する
+     *
+     * @param file ファイル
+     * @param maxInstallments 格納できる償還表の最大の返済回数。1件の領域が2GBを超えない範囲で指定する
+     */
+    public static ScheduleStore create(final Path file, final int maxInstallments) throws IOException {
+        return create(file, maxInstallments, maxInstallments);
+    }
+
+    /**
+     * 変更履歴の最大件数を指定して新しいファイルを作成<br>
+     * 既存のファイルは上書きする
+     *
+     * @param file ファイル
+     * @param maxInstallments 格納できる償還表の最大の返済回数。1件の領域が2GBを超えない範囲で指定する
+     * @param maxEvents 償還表ごとに格納できる変更履歴の最大件数
+     */
+    public static ScheduleStore create(final Path file, final int maxInstallments, final int maxEvents) throws IOException {
+        if (maxInstallments <= 0)
+            throw new IllegalArgumentException("bad maxInstallments: " + maxInstallments);
+        if (maxEvents < 0)
+            throw new IllegalArgumentException("bad maxEvents: " + maxEvents);
+        if (slotSize(maxInstallments, maxEvents) > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("bad maxInstallments: " + maxInstallments + ", maxEvents: " + maxEvents);
+        final FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        final MappedByteBuffer header = channel.map(MapMode.READ_WRITE, 0, HEADER_SIZE);
+        header.order(ByteOrder.LITTLE_ENDIAN);
+        header.put(MAGIC);
+        header.putInt(4, VERSION);
+        header.putInt(8, maxInstallments);
+        header.putInt(COUNT_OFFSET, 0);
+        header.putInt(MAX_EVENTS_OFFSET, maxEvents);
+        return new ScheduleStore(channel, header, maxInstallments, maxEvents, 0);
+    }
+
+    /**
+     * 既存のファイルを開く
+     *
+     * @param file create()で作成したファイル
+     */
+    public static ScheduleStore open(final Path file) throws IOException {
+        final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (channel.size() < HEADER_SIZE)
+                throw new IOException("bad format");
+            final MappedByteBuffer header = channel.map(MapMode.READ_WRITE, 0, HEADER_SIZE);
+            header.order(ByteOrder.LITTLE_ENDIAN);
+            final byte magic[] = new byte[MAGIC.length];
+            header.get(magic);
+            if (!Arrays.equals(magic, MAGIC))
+                throw new IOException("bad format");
+            if (header.getInt(4) != VERSION)
+                throw new IOException("unsupported version: " + header.getInt(4));
+            final int stride = header.getInt(8);
+            final int count = header.getInt(COUNT_OFFSET);
+            final int maxEvents = header.getInt(MAX_EVENTS_OFFSET);
+            if (stride <= 0 || maxEvents < 0 || slotSize(stride, maxEvents) > Integer.MAX_VALUE || count < 0)
+                throw new IOException("bad format");
+            return new ScheduleStore(channel, header, stride, maxEvents, count);
+        }
+        catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return 格納できる償還表の最大の返済回数
+     */
+    public int getMaxInstallments() {
+        return stride;
+    }
+
+    /**
+     * @return 償還表ごとに格納できる変更履歴の最大件数
+     */
+    public int getMaxEvents() {
+        return maxEvents;
+    }
+
+    /**
+     * @return 格納済みの償還表の数
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * 償還表を追加<br>
+     * 変更履歴も格納し、get()で取得した償還表のgetHistory()で参照できる
+     *
+     * @param table 追加する償還表。変更履歴はgetMaxEvents()件まで
+     * @return 追加した償還表の番号。0から順に割り当てる
+     */
+    public synchronized int add(final AbstractPaymentTable table) throws IOException {
+        if (table == null)
+            throw new IllegalArgumentException("table cannot be null");
+        final LoanInfo loanInfo = table.getLoanInfo();
+        if (loanInfo.installments > stride)
+            throw new IllegalArgumentException("bad installments: " + loanInfo.installments);
+        final List<LoanEvent> history = table.getHistory();
+        if (history.size() > maxEvents)
+            throw new IllegalArgumentException("bad history size: " + history.size());
+
+        final int id = count;
+        final ByteBuffer segment = segment(id / slotsPerSegment);
+        final int base = (id % slotsPerSegment) * slotSize;
+        segment.putLong(base, loanInfo.amount);
+        segment.putDouble(base + 8, loanInfo.annualRate);
+        segment.putInt(base + 16, loanInfo.years);
+        segment.putInt(base + 20, loanInfo.months);
+        segment.putInt(base + 24, loanInfo.installments);
+        segment.put(base + 28, (byte)loanInfo.rateType.ordinal());
+        segment.put(base + 29, (byte)loanInfo.paymentType.ordinal());
+        segment.put(base + 30, (byte)loanInfo.prepaymentType.ordinal());
+        segment.put(base + 31, (byte)ScheduleFormat.engine(table));
+        segment.putInt(base + 32, history.size());
+
+        final int values = base + META_SIZE;
+        for (PaymentRecord r : table) {
+            final int n = r.getIndex();
+            segment.putDouble(values + ((ScheduleColumn.RATE.ordinal() * stride + n) << 3), r.getRate());
+            for (ScheduleColumn column : ScheduleColumn.values()) {
+                if (column != ScheduleColumn.RATE)
+                    segment.putLong(values + ((column.ordinal() * stride + n) << 3), column.get(r));
+            }
+        }
+
+        int event = values + ScheduleColumn.values().length * stride * 8;
+        for (LoanEvent e : history) {
+            segment.putInt(event, e.index);
+            segment.put(event + 4, (byte)e.type.ordinal());
+            if (e.type == LoanEvent.Type.PREPAYMENT)
+                segment.putLong(event + 8, e.amount);
+            else
+                segment.putDouble(event + 8, e.rate);
+            event += EVENT_SIZE;
+        }
+
+        // 値を書き込んでから件数を更新するため、get()は書き込み途中の償還表を参照しない
+        header.putInt(COUNT_OFFSET, id + 1);
+        count = id + 1;
+        return id;
+    }
+
+    /**
+     * 償還表を取得<br>
+     * 返す償還表はファイルを割り当てたメモリを直接参照する。計算状態や集計用の累計は作成せず、返済回の値も読み込まない。
+     * 集計は参照のたびに範囲内の値を合計する。変更する場合はfork()でヒープ上に複製すること
+     *
+     * @param id 償還表の番号
+     * @return 読み取り専用の償還表
+     */
+    public AbstractPaymentTable get(final int id) throws IOException {
+        if (id < 0 || id >= count)
+            throw new IndexOutOfBoundsException("bad id: " + id);
+        final ByteBuffer segment = segment(id / slotsPerSegment);
+        final int base = (id % slotsPerSegment) * slotSize;
+        final RateType rateType = RateType.values()[segment.get(base + 28)];
+        final PaymentType paymentType = PaymentType.values()[segment.get(base + 29)];
+        final PrepaymentType prepaymentType = PrepaymentType.values()[segment.get(base + 30)];
+        final LoanInfo loanInfo = new LoanInfo(segment.getLong(base), segment.getInt(base + 16), segment.getInt(base + 20),
+                segment.getDouble(base + 8), rateType, paymentType, prepaymentType);
+        if (loanInfo.installments != segment.getInt(base + 24))
+            throw new IOException("bad installments");
+
+        final Class<? extends AbstractPaymentTable> engineType = ScheduleFormat.engineType(segment.get(base + 31));
+        final MappedPaymentColumns columns = new MappedPaymentColumns(segment, base + META_SIZE, stride, loanInfo.installments);
+        return AbstractPaymentTable.view(engineType, loanInfo, columns, readHistory(segment, base));
+    }
+
+    /**
+     * 領域に格納した変更履歴を読み込む
+     */
+    private List<LoanEvent> readHistory(final ByteBuffer segment, final int base) throws IOException {
+        final int size = segment.getInt(base + 32);
+        if (size < 0 || size > maxEvents)
+            throw new IOException("bad history size: " + size);
+        final List<LoanEvent> history = new ArrayList<LoanEvent>(size);
+        int event = base + META_SIZE + ScheduleColumn.values().length * stride * 8;
+        try {
+            for (int i = 0; i < size; i++) {
+                final int type = segment.get(event + 4);
+                if (type == LoanEvent.Type.PREPAYMENT.ordinal())
+                    history.add(LoanEvent.prepayment(segment.getInt(event), segment.getLong(event + 8)));
+                else if (type == LoanEvent.Type.RATE_CHANGE.ordinal())
+                    history.add(LoanEvent.changeRate(segment.getInt(event), segment.getDouble(event + 8)));
+                else
+                    throw new IOException("bad ordinal: " + type);
+                event += EVENT_SIZE;
+            }
+        }
+        catch (IllegalArgumentException e) {
+            throw new IOException("bad history", e);
+        }
+        return history;
+    }
+
+    /**
+     * k番目の領域を取得。なければ割り当てる
+     */
+    private ByteBuffer segment(final int k) throws IOException {
+        final ByteBuffer current[] = segments;
+        if (k < current.length && current[k] != null)
+            return current[k];
+        synchronized (this) {
+            if (k < segments.length && segments[k] != null)
+                return segments[k];
+            final long position = HEADER_SIZE + (long)k * slotsPerSegment * slotSize;
+            final MappedByteBuffer segment = channel.map(MapMode.READ_WRITE, position, (long)slotsPerSegment * slotSize);
+            segment.order(ByteOrder.LITTLE_ENDIAN);
+            final ByteBuffer next[] = Arrays.copyOf(segments, Math.max(segments.length, k + 1));
+            next[k] = segment;
+            segments = next;
+            return segment;
+        }
+    }
+
+    /**
+     * 書き込んだ内容をファイルに反映
+     */
+    public synchronized void force() {
+        header.force();
+        for (ByteBuffer segment : segments) {
+            if (segment != null)
+                ((MappedByteBuffer)segment).force();
+        }
+    }
+
+    /**
+     * ファイルを閉じる<br>
+     * 取得済みの償還表は、ガベージコレクションで割り当てが解除されるまで参照できる
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        force();
+        channel.close();
+    }
+}
@@ -0,0 +1,133 @@
+package nx.domain.loan.io;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+import nx.domain.loan.model.LoanEvent;
+import nx.domain.loan.model.LoanInfo;
+import nx.domain.loan.model.PaymentRecord;
+import nx.domain.loan.payment.AbstractPaymentTable;
+
+/**
+ * 償還表を借り入れ条件と変更履歴とともにバイナリ形式で出力<br>
+ * 1つのストリームに複数の償還表を続けて出力できる。形式はScheduleFormatを参照
+ *
+ * @see ScheduleReader
+ */
+public class ScheduleWriter implements Closeable, Flushable {
+    private final DataOutputStream out;
+
+    /**
+     * 項目ごとのデータ。長さを先に出力するため一旦格納する
+     */
+    private final ByteArrayOutputStream buffers[] = new ByteArrayOutputStream[ScheduleColumn.values().length];
+    private final DataOutputStream bufferOuts[] = new DataOutputStream[buffers.length];
+
+    /**
+     * @param out 出力先
+     */
+    public ScheduleWriter(final OutputStream out) {
+        if (out == null)
+            throw new IllegalArgumentException("out cannot be null");
+        this.out = new DataOutputStream(new BufferedOutputStream(out));
+        for (int c = 0; c < buffers.length; c++) {
+            buffers[c] = new ByteArrayOutputStream();
+            bufferOuts[c] = new DataOutputStream(buffers[c]);
+        }
+    }
+
+    /**
+     * 償還表を出力
+     *
+     * @param table 出力する償還表
+     */
+    public void write(final AbstractPaymentTable table) throws IOException {
+        if (table == null)
+            throw new IllegalArgumentException("table cannot be null");
+        final LoanInfo loanInfo = table.getLoanInfo();
+        out.write(ScheduleFormat.MAGIC);
+        out.writeByte(ScheduleFormat.VERSION);
+        out.writeByte(ScheduleFormat.engine(table));
+        ScheduleFormat.writeVarLong(out, loanInfo.amount);
+        ScheduleFormat.writeVarLong(out, loanInfo.years);
+        ScheduleFormat.writeVarLong(out, loanInfo.months);
+        out.writeDouble(loanInfo.annualRate);
+        out.writeByte(loanInfo.rateType.ordinal());
+        out.writeByte(loanInfo.paymentType.ordinal());
+        out.writeByte(loanInfo.prepaymentType.ordinal());
+        ScheduleFormat.writeVarLong(out, loanInfo.installments);
+
+        final List<LoanEvent> history = table.getHistory();
+        ScheduleFormat.writeVarLong(out, history.size());
+        for (LoanEvent e : history) {
+            out.writeByte(e.type.ordinal());
+            ScheduleFormat.writeVarLong(out, e.index);
+            if (e.type == LoanEvent.Type.PREPAYMENT)
+                ScheduleFormat.writeVarLong(out, e.amount);
+            else
+                out.writeDouble(e.rate);
+        }
+
+        final ScheduleColumn all[] = ScheduleColumn.values();
+        for (ByteArrayOutputStream buffer : buffers)
+            buffer.reset();
+        encodeRates(table.rates(), bufferOuts[ScheduleColumn.RATE.ordinal()]);
+        encodeAmounts(table, all);
+
+        ScheduleFormat.writeVarLong(out, all.length);
+        for (ScheduleColumn column : all) {
+            final ByteArrayOutputStream buffer = buffers[column.ordinal()];
+            out.writeByte(column.ordinal());
+            ScheduleFormat.writeVarLong(out, buffer.size());
+            buffer.writeTo(out);
+        }
+    }
+
+    /**
+     * 同じ利率が続く回数と利率の組
+     */
+    private static void encodeRates(final double rates[], final DataOutputStream data) throws IOException {
+        int i = 0;
+        while (i < rates.length) {
+            int j = i + 1;
+            while (j < rates.length && Double.compare(rates[i], rates[j]) == 0)
+                j++;
+            ScheduleFormat.writeVarLong(data, j - i);
+            data.writeDouble(rates[i]);
+            i = j;
+        }
+    }
+
+    /**
+     * 金額の各項目を前回との差の可変長整数として、初回から順に1回の走査で格納
+     */
+    private void encodeAmounts(final AbstractPaymentTable table, final ScheduleColumn all[]) throws IOException {
+        final long previous[] = new long[all.length];
+        for (PaymentRecord r : table) {
+            for (ScheduleColumn column : all) {
+                if (column == ScheduleColumn.RATE)
+                    continue;
+                final int c = column.ordinal();
+                final long value = column.get(r);
+                ScheduleFormat.writeVarLong(bufferOuts[c], ScheduleFormat.zigzag(value - previous[c]));
+                previous[c] = value;
+            }
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
@@ -0,0 +1,94 @@
+package nx.domain.loan.model;
+
+/**
+ * 返済途中の条件変更<br>
+ * 繰り上げ返済または利率変更を表す
+ */
+public class LoanEvent {
+    /**
+     * 条件変更の種別
+     */
+    public enum Type {
+        /**
+         * 繰り上げ返済
+         */
+        PREPAYMENT,
+        /**
+         * 利率変更
+         */
+        RATE_CHANGE;
+
+        @Override
+        public String toString() {
+            switch (this.ordinal()) {
+            case 0:
+                return "繰り上げ返済";
+            case 1:
+                return "利率変更";
+            default:
+                return "エラー";
+            }
+        }
+    };
+
+    /**
+     * 条件変更の種別
+     */
+    public final Type type;
+
+    /**
+     * 条件変更を行う返済回(初回は0)
+     */
+    public final int index;
+
+    /**
+     * 繰り上げ返済の額。利率変更では0
+     */
+    public final long amount;
+
+    /**
+     * 新しい利率(年利)。繰り上げ返済では0
+     */
+    public final double rate;
+
+    private LoanEvent(final Type type, final int index, final long amount, final double rate) {
+        if (index < 0)
+            throw new IllegalArgumentException("bad argument n: " + index);
+        this.type   = type;
+        this.index  = index;
+        this.amount = amount;
+        this.rate   = rate;
+    }
+
+    /**
+     * 繰り上げ返済
+     *
+     * @param n 繰り上げ返済を実施する返済回
+     * @param amount 繰り上げ返済の額
+     */
+    public static LoanEvent prepayment(final int n, final long amount) {
+        if (amount <= 0)
+            throw new IllegalArgumentException("bad amount: " + amount);
+        return new LoanEvent(Type.PREPAYMENT, n, amount, 0D);
+    }
+
+    /**
+     * 利率変更
+     *
+     * @param n 新しい利率を適用する返済回
+     * @param newRate 新しい利率
+     */
+    public static LoanEvent changeRate(final int n, final double newRate) {
+        if (newRate < 0D)
+            throw new IllegalArgumentException("bad rate: " + newRate);
+        return new LoanEvent(Type.RATE_CHANGE, n, 0L, newRate);
+    }
+
+    @Override
+    public String toString() {
+        if (type == Type.PREPAYMENT)
+            return String.format("%d回 %s %d", index, type, amount);
+        else
+            return String.format("%d回 %s %.3f%%", index, type, rate * 100);
+    }
+}
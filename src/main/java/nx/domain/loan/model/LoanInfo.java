@@ -139,4 +139,42 @@ public class LoanInfo {
         this.paymentType    = paymentType;
         this.prepaymentType = prepaymentType;
     }
+
+    /**
+     * 借り入れの初期条件がすべて等しい場合にtrue
+     */
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof LoanInfo))
+            return false;
+        final LoanInfo other = (LoanInfo)o;
+        return amount == other.amount
+            && years == other.years
+            && months == other.months
+            && Double.compare(annualRate, other.annualRate) == 0
+            && rateType == other.rateType
+            && paymentType == other.paymentType
+            && prepaymentType == other.prepaymentType;
+    }
+
+    @Override
+    public int hashCode() {
+        int h = (int)(amount ^ (amount >>> 32));
+        h = 31 * h + years;
+        h = 31 * h + months;
+        final long rateBits = Double.doubleToLongBits(annualRate);
+        h = 31 * h + (int)(rateBits ^ (rateBits >>> 32));
+        h = 31 * h + (rateType == null ? 0 : rateType.hashCode());
+        h = 31 * h + (paymentType == null ? 0 : paymentType.hashCode());
+        h = 31 * h + (prepaymentType == null ? 0 : prepaymentType.hashCode());
+        return h;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d円 %d年%dか月 %.3f%% %s %s %s", amount, years, months, annualRate * 100,
+                rateType, paymentType, prepaymentType);
+    }
 }
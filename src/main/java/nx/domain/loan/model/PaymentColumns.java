@@ -0,0 +1,313 @@
+package nx.domain.loan.model;
+
+import java.util.Arrays;
+
+/**
+ * 償還表の各項目を返済回ごとの配列で保持<br>
+ * 返済回ごとにPaymentRecordを作らずに済むよう、項目ごとの配列に格納する。
+ * PaymentRecordはこの配列の特定の回を参照するビューとして利用する。
+ * 配列は64回ごとのページに分かれており、fork()で作成した複製とはページを共有する。
+ * 共有中のページは、変更する側が書き込む前にコピーする。
+ */
+public class PaymentColumns {
+    private static final int PAGE_SHIFT = 6;
+    private static final int PAGE_SIZE  = 1 << PAGE_SHIFT;
+    private static final int PAGE_MASK  = PAGE_SIZE - 1;
+
+    private final int size;
+    private final Page pages[];
+
+    /**
+     * trueのページは他のPaymentColumnsと共有しているため、書き込む前にコピーする
+     */
+    private final boolean shared[];
+
+    /**
+     * 前回clearModified()を呼び出してから、元金、利息、繰上額、充当未払い利息のいずれかを変更した最初の回
+     */
+    private int modifiedFrom;
+
+    /**
+     * trueの場合は値を変更できない
+     */
+    private boolean readOnly;
+
+    /**
+     * @param size 返済回数
+     */
+    public PaymentColumns(final int size) {
+        this(size, true);
+    }
+
+    /**
+     * 値をこのクラスの配列以外の領域に保持するサブクラス用<br>
+     * allocateがfalseの場合は配列を作成せず、読み取り専用になる。
+     * その場合、サブクラスは値を取得するすべてのメソッドとfork()をオーバーライドすること
+     *
+     * @param size 返済回数
+     * @param allocate 値を保持する配列を作成する場合はtrue
+     */
+    protected PaymentColumns(final int size, final boolean allocate) {
+        if (size <= 0)
+            throw new IllegalArgumentException("bad size: " + size);
+        this.size         = size;
+        this.pages        = new Page[allocate ? (size + PAGE_MASK) >> PAGE_SHIFT : 0];
+        this.shared       = new boolean[pages.length];
+        this.modifiedFrom = 0;
+        this.readOnly     = !allocate;
+        for (int p = 0; p < pages.length; p++) {
+            pages[p] = new Page(Math.min(PAGE_SIZE, size - (p << PAGE_SHIFT)));
+        }
+    }
+
+    /**
+     * 複製元とすべてのページを共有する
+     */
+    private PaymentColumns(final PaymentColumns parent) {
+        this.size         = parent.size;
+        this.pages        = parent.pages.clone();
+        this.shared       = new boolean[pages.length];
+        this.modifiedFrom = 0;
+        Arrays.fill(shared, true);
+    }
+
+    /**
+     * 値を共有する複製を作成<br>
+     * 複製と複製元のどちらかを変更した場合は、変更したページだけがコピーされ、もう一方には影響しない。
+     * 複製元が読み取り専用の場合でも、複製は変更できる
+     *
+     * @return 複製
+     */
+    public PaymentColumns fork() {
+        // 読み取り専用であれば複製元は書き込まないため、共有の印は不要
+        if (!readOnly)
+            Arrays.fill(shared, true);
+        return new PaymentColumns(this);
+    }
+
+    /**
+     * @return 返済回数
+     */
+    public int size() { return size; }
+
+    public double getRate(final int n) { return pages[n >> PAGE_SHIFT].rate[n & PAGE_MASK]; }
+
+    public void setRate(final int n, final double rate) {
+        page(n).rate[n & PAGE_MASK] = rate;
+    }
+
+    public long getPrincipal(final int n) { return pages[n >> PAGE_SHIFT].principal[n & PAGE_MASK]; }
+
+    public void setPrincipal(final int n, final long amount) {
+        page(n).principal[n & PAGE_MASK] = amount;
+        modified(n);
+    }
+
+    public long getInterest(final int n) { return pages[n >> PAGE_SHIFT].interest[n & PAGE_MASK]; }
+
+    public void setInterest(final int n, final long amount) {
+        page(n).interest[n & PAGE_MASK] = amount;
+        modified(n);
+    }
+
+    public long getTotal(final int n) { return pages[n >> PAGE_SHIFT].total[n & PAGE_MASK]; }
+
+    public void setTotal(final int n, final long amount) {
+        page(n).total[n & PAGE_MASK] = amount;
+    }
+
+    public long getBalance(final int n) { return pages[n >> PAGE_SHIFT].balance[n & PAGE_MASK]; }
+
+    public void setBalance(final int n, final long amount) {
+        page(n).balance[n & PAGE_MASK] = amount;
+    }
+
+    public long getPrepayment(final int n) { return pages[n >> PAGE_SHIFT].prepayment[n & PAGE_MASK]; }
+
+    public void setPrepayment(final int n, final long amount) {
+        page(n).prepayment[n & PAGE_MASK] = amount;
+        modified(n);
+    }
+
+    public long getAccruedInterestNew(final int n) { return pages[n >> PAGE_SHIFT].accruedInterestNew[n & PAGE_MASK]; }
+
+    public void setAccruedInterestNew(final int n, final long amount) {
+        page(n).accruedInterestNew[n & PAGE_MASK] = amount;
+    }
+
+    public long getAccruedInterestPaid(final int n) { return pages[n >> PAGE_SHIFT].accruedInterestPaid[n & PAGE_MASK]; }
+
+    public void setAccruedInterestPaid(final int n, final long amount) {
+        page(n).accruedInterestPaid[n & PAGE_MASK] = amount;
+        modified(n);
+    }
+
+    public long getAccruedInterestBalance(final int n) { return pages[n >> PAGE_SHIFT].accruedInterestBalance[n & PAGE_MASK]; }
+
+    public void setAccruedInterestBalance(final int n, final long amount) {
+        page(n).accruedInterestBalance[n & PAGE_MASK] = amount;
+    }
+
+    /**
+     * n回目の繰上額と利率以外の項目を初期化
+     */
+    public void reset(final int n) {
+        final Page page = page(n);
+        final int i = n & PAGE_MASK;
+        page.accruedInterestNew[i] = 0;
+        page.accruedInterestPaid[i] = 0;
+        page.accruedInterestBalance[i] = 0;
+        page.balance[i] = 0;
+        page.interest[i] = 0;
+        page.principal[i] = 0;
+        page.total[i] = 0;
+        modified(n);
+    }
+
+    /**
+     * n回目を含む書き込み可能なページ<br>
+     * 共有中のページはコピーしてから返す
+     */
+    private Page page(final int n) {
+        checkWritable();
+        final int p = n >> PAGE_SHIFT;
+        if (shared[p]) {
+            pages[p] = new Page(pages[p]);
+            shared[p] = false;
+        }
+        return pages[p];
+    }
+
+    /**
+     * 以後の変更を禁止<br>
+     * 読み取り専用にした後は、finalのフィールドや同期を介して受け渡せば複数のスレッドから同時に参照できる
+     */
+    public void setReadOnly() { readOnly = true; }
+
+    /**
+     * @return 読み取り専用であればtrue
+     */
+    public boolean isReadOnly() { return readOnly; }
+
+    private void checkWritable() {
+        if (readOnly)
+            throw new UnsupportedOperationException("read-only");
+    }
+
+    private void modified(final int n) {
+        if (n < modifiedFrom)
+            modifiedFrom = n;
+    }
+
+    /**
+     * 集計対象の項目を変更した最初の回<br>
+     * 合計値をキャッシュする場合に、再計算が必要な範囲を求めるために利用
+     *
+     * @return 前回clearModified()を呼び出した後に元金、利息、繰上額、充当未払い利息を変更した最初の回。変更がなければsize()
+     */
+    public int getModifiedFrom() { return modifiedFrom; }
+
+    /**
+     * 変更を記録した回をクリア
+     */
+    public void clearModified() { modifiedFrom = size; }
+
+    /**
+     * @return 全返済回の利率のコピー
+     */
+    public double[] getRates() {
+        final double values[] = new double[size];
+        for (int p = 0; p < pages.length; p++)
+            System.arraycopy(pages[p].rate, 0, values, p << PAGE_SHIFT, pages[p].rate.length);
+        return values;
+    }
+
+    /**
+     * @return 全返済回の元金のコピー
+     */
+    public long[] getPrincipals() {
+        final long values[] = new long[size];
+        for (int p = 0; p < pages.length; p++)
+            System.arraycopy(pages[p].principal, 0, values, p << PAGE_SHIFT, pages[p].principal.length);
+        return values;
+    }
+
+    /**
+     * @return 全返済回の利息のコピー
+     */
+    public long[] getInterests() {
+        final long values[] = new long[size];
+        for (int p = 0; p < pages.length; p++)
+            System.arraycopy(pages[p].interest, 0, values, p << PAGE_SHIFT, pages[p].interest.length);
+        return values;
+    }
+
+    /**
+     * @return 全返済回の支払額合計のコピー
+     */
+    public long[] getTotals() {
+        final long values[] = new long[size];
+        for (int p = 0; p < pages.length; p++)
+            System.arraycopy(pages[p].total, 0, values, p << PAGE_SHIFT, pages[p].total.length);
+        return values;
+    }
+
+    /**
+     * @return 全返済回の元金残高のコピー
+     */
+    public long[] getBalances() {
+        final long values[] = new long[size];
+        for (int p = 0; p < pages.length; p++)
+            System.arraycopy(pages[p].balance, 0, values, p << PAGE_SHIFT, pages[p].balance.length);
+        return values;
+    }
+
+    /**
+     * @return 全返済回の繰上額のコピー
+     */
+    public long[] getPrepayments() {
+        final long values[] = new long[size];
+        for (int p = 0; p < pages.length; p++)
+            System.arraycopy(pages[p].prepayment, 0, values, p << PAGE_SHIFT, pages[p].prepayment.length);
+        return values;
+    }
+
+    /**
+     * 最大64回分の各項目
+     */
+    private static final class Page {
+        final double rate[];
+        final long principal[];
+        final long interest[];
+        final long total[];
+        final long balance[];
+        final long prepayment[];
+        final long accruedInterestNew[];
+        final long accruedInterestPaid[];
+        final long accruedInterestBalance[];
+
+        Page(final int size) {
+            rate                   = new double[size];
+            principal              = new long[size];
+            interest               = new long[size];
+            total                  = new long[size];
+            balance                = new long[size];
+            prepayment             = new long[size];
+            accruedInterestNew     = new long[size];
+            accruedInterestPaid    = new long[size];
+            accruedInterestBalance = new long[size];
+        }
+
+        Page(final Page page) {
+            rate                   = page.rate.clone();
+            principal              = page.principal.clone();
+            interest               = page.interest.clone();
+            total                  = page.total.clone();
+            balance                = page.balance.clone();
+            prepayment             = page.prepayment.clone();
+            accruedInterestNew     = page.accruedInterestNew.clone();
+            accruedInterestPaid    = page.accruedInterestPaid.clone();
+            accruedInterestBalance = page.accruedInterestBalance.clone();
+        }
+    }
+}
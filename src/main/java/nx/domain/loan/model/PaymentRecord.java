@@ -1,59 +1,62 @@
 package nx.domain.loan.model;
 
 /**
- * 各回のローン情報
+ * 各回のローン情報<br>
+ * PaymentColumnsの特定の回を参照するビュー。引数なしのコンストラクタで作成した場合は単独で値を保持する。
  */
 public class PaymentRecord {
     /**
-     * 返済回(初回は0)
-     */
-    private int index;
-
-    /**
-     * 今回の年利
-     */
-    private double rate;
-
-    /**
-     * 今回支払う元金
-     */
-    private long principal;
-
-    /**
-     * 今回支払う利息
+     * 値を格納する配列
      */
-
-    private long interest;
-
-    /**
-     * 今回の支払額合計 (元金+利息+繰り上げ返済額)
-     */
-    private long total;
+    private final PaymentColumns columns;
 
     /**
-     * 今回の支払い後の残元金
+     * 参照している配列上の位置
      */
-    private long balance;
+    private int row;
 
     /**
-     * 今回の繰り上げ返済額
+     * 返済回(初回は0)
      */
-    private long prepayment;
+    private int index;
 
     /**
-     * 今回新たに発生した未払い利息
+     * 単独で値を保持する返済情報を作成
      */
-    private long accruedInterestNew;
+    public PaymentRecord() {
+        this(new PaymentColumns(1), 0);
+    }
 
     /**
-     * 前回までの未払い利息のうち今回返済した額
+     * 償還表のn回目を参照する返済情報を作成
+     *
+     * @param columns 償還表の配列
+     * @param n 返済回
      */
-    private long accruedInterestPaid;
+    public PaymentRecord(final PaymentColumns columns, final int n) {
+        if (columns == null)
+            throw new IllegalArgumentException("columns cannot be null");
+        if (n < 0 || n >= columns.size())
+            throw new IndexOutOfBoundsException();
+        this.columns = columns;
+        this.row = n;
+        this.index = n;
+    }
 
     /**
-     * 未払い利息累計
+     * 参照する返済回を移動<br>
+     * 一つのPaymentRecordを使い回して償還表を順に読み書きする場合に利用
+     *
+     * @param n 返済回
+     * @return このPaymentRecord
      */
-    private long accruedInterestBalance;
+    public PaymentRecord moveTo(final int n) {
+        if (n < 0 || n >= columns.size())
+            throw new IndexOutOfBoundsException();
+        this.row = n;
+        this.index = n;
+        return this;
+    }
 
     /**
      * 返済回
@@ -73,7 +76,7 @@ public class PaymentRecord {
      * @return 今回の年利
      */
     public double getRate() {
-        return rate;
+        return columns.getRate(row);
     }
 
     /**
@@ -82,14 +85,14 @@ public class PaymentRecord {
      * @param rate 利率(年利)
      */
     public void setRate(double rate) {
-        this.rate = rate;
+        columns.setRate(row, rate);
     }
 
     /**
      * @return 今回支払う元金額
      */
     public long getPrincipal() {
-        return principal;
+        return columns.getPrincipal(row);
     }
 
     /**
@@ -98,14 +101,14 @@ public class PaymentRecord {
      * @param amount 元金額
      */
     public void setPrincipal(long amount) {
-        this.principal = amount;
+        columns.setPrincipal(row, amount);
     }
 
     /**
      * @return 今回支払う利息額
      */
     public long getInterest() {
-        return interest;
+        return columns.getInterest(row);
     }
 
     /**
@@ -114,14 +117,14 @@ public class PaymentRecord {
      * @param amount 利息額
      */
     public void setInterest(long amount) {
-        this.interest = amount;
+        columns.setInterest(row, amount);
     }
 
     /**
      * @return 今回の支払額合計
      */
     public long getTotal() {
-        return total;
+        return columns.getTotal(row);
     }
 
     /**
@@ -130,14 +133,14 @@ public class PaymentRecord {
      * @param amount 支払額合計
      */
     public void setTotal(long amount) {
-        this.total = amount;
+        columns.setTotal(row, amount);
     }
 
     /**
      * @return 今回の支払い後の元金残額
      */
     public long getBalance() {
-        return balance;
+        return columns.getBalance(row);
     }
 
    /**
@@ -146,14 +149,14 @@ public class PaymentRecord {
     * @param amount 元金残額
     */
     public void setBalance(long amount) {
-        this.balance = amount;
+        columns.setBalance(row, amount);
     }
 
     /**
      * @return 今回の繰り上げ返済額
      */
     public long getPrepayment() {
-        return prepayment;
+        return columns.getPrepayment(row);
     }
 
     /**
@@ -162,14 +165,14 @@ public class PaymentRecord {
      * @param amount 繰り上げ返済額
      */
     public void setPrepayment(long amount) {
-        this.prepayment = amount;
+        columns.setPrepayment(row, amount);
     }
 
     /**
      * @return 今回新たに発生した未払い利息額
      */
     public long getAccruedInterestNew() {
-        return accruedInterestNew;
+        return columns.getAccruedInterestNew(row);
     }
 
     /**
@@ -178,14 +181,14 @@ public class PaymentRecord {
      * @param amount 未払い利息額
      */
     public void setAccruedInterestNew(long amount) {
-        this.accruedInterestNew = amount;
+        columns.setAccruedInterestNew(row, amount);
     }
 
     /**
      * @return 今回返済した未払い利息額
      */
     public long getAccruedInterestPaid() {
-        return accruedInterestPaid;
+        return columns.getAccruedInterestPaid(row);
     }
 
     /**
@@ -194,14 +197,14 @@ public class PaymentRecord {
      * @param amount 未払い利息額
      */
     public void setAccruedInterestPaid(long amount) {
-        this.accruedInterestPaid = amount;
+        columns.setAccruedInterestPaid(row, amount);
     }
 
     /**
      * @return 未払い利息累計
      */
     public long getAccruedInterestBalance() {
-        return accruedInterestBalance;
+        return columns.getAccruedInterestBalance(row);
     }
 
     /**
@@ -210,19 +213,13 @@ public class PaymentRecord {
      * @param amount 未払い利息累計
      */
     public void setAccruedInterestBalance(long amount) {
-        this.accruedInterestBalance = amount;
+        columns.setAccruedInterestBalance(row, amount);
     }
 
     /**
      * 繰上額と利率以外の項目を初期化
      */
     public void reset() {
-        accruedInterestNew = 0;
-        accruedInterestPaid = 0;
-        accruedInterestBalance = 0;
-        balance = 0;
-        interest = 0;
-        principal = 0;
-        total = 0;
+        columns.reset(row);
     }
 }
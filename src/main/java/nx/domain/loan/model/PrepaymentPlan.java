@@ -0,0 +1,163 @@
+package nx.domain.loan.model;
+
+import java.util.Arrays;
+
+/**
+ * 繰り上げ返済の予定<br>
+ * 一回だけの繰り上げ返済、一定間隔で一定額の繰り上げ返済、一定間隔でその時点の元金残高に対する割合の繰り上げ返済を組み合わせる。
+ * 終わりの回を指定しない予定は、元金残高が0になるまで続く。
+ * 同じ返済回に複数の予定がある場合は、それぞれの額の合計を繰り上げ返済する。
+ * AbstractPaymentTable.apply(PrepaymentPlan)で、予定の数によらず償還表の1回の再計算で処理する。
+ */
+public class PrepaymentPlan {
+    private final Rule rules[];
+
+    private PrepaymentPlan(final Rule... rules) {
+        this.rules = rules;
+    }
+
+    /**
+     * 一回だけの繰り上げ返済
+     *
+     * @param n 繰り上げ返済を実施する返済回
+     * @param amount 繰り上げ返済の額
+     */
+    public static PrepaymentPlan once(final int n, final long amount) {
+        return every(n, 1, 1, amount);
+    }
+
+    /**
+     * start回目からinterval回ごとに、元金残高が0になるまで一定額を繰り上げ返済
+     *
+     * @param start 最初に繰り上げ返済を実施する返済回
+     * @param interval 繰り上げ返済の間隔(返済回数)
+     * @param amount 1回の繰り上げ返済の額
+     */
+    public static PrepaymentPlan every(final int start, final int interval, final long amount) {
+        return every(start, interval, Integer.MAX_VALUE, amount);
+    }
+
+    /**
+     * start回目からinterval回ごとに、count回まで一定額を繰り上げ返済
+     *
+     * @param start 最初に繰り上げ返済を実施する返済回
+     * @param interval 繰り上げ返済の間隔(返済回数)
+     * @param count 繰り上げ返済の回数
+     * @param amount 1回の繰り上げ返済の額
+     */
+    public static PrepaymentPlan every(final int start, final int interval, final int count, final long amount) {
+        if (amount <= 0)
+            throw new IllegalArgumentException("bad amount: " + amount);
+        return new PrepaymentPlan(new Rule(start, interval, count, amount, 0D));
+    }
+
+    /**
+     * start回目からinterval回ごとに、元金残高が0になるまでその時点の元金残高の一定割合を繰り上げ返済<br>
+     * 元金残高は繰り上げ返済を実施する回の支払い前の額で、繰り上げ返済の額は1円未満を四捨五入する
+     *
+     * @param start 最初に繰り上げ返済を実施する返済回
+     * @param interval 繰り上げ返済の間隔(返済回数)
+     * @param ratio 元金残高に対する割合。0より大きく1以下
+     */
+    public static PrepaymentPlan percentOfBalance(final int start, final int interval, final double ratio) {
+        if (!(ratio > 0D && ratio <= 1D))
+            throw new IllegalArgumentException("bad ratio: " + ratio);
+        return new PrepaymentPlan(new Rule(start, interval, Integer.MAX_VALUE, 0L, ratio));
+    }
+
+    /**
+     * この予定と別の予定を合わせた予定を作成
+     *
+     * @param other 合わせる予定
+     * @return 両方の予定を含む予定
+     */
+    public PrepaymentPlan and(final PrepaymentPlan other) {
+        if (other == null)
+            throw new IllegalArgumentException("other cannot be null");
+        final Rule merged[] = Arrays.copyOf(rules, rules.length + other.rules.length);
+        System.arraycopy(other.rules, 0, merged, rules.length, other.rules.length);
+        return new PrepaymentPlan(merged);
+    }
+
+    /**
+     * @return 最初に繰り上げ返済を実施する返済回
+     */
+    public int getStart() {
+        int start = Integer.MAX_VALUE;
+        for (Rule rule : rules)
+            start = Math.min(start, rule.start);
+        return start;
+    }
+
+    /**
+     * n回目の繰り上げ返済の額
+     *
+     * @param n 返済回
+     * @param balance n回目の支払い前の元金残高
+     * @return 繰り上げ返済の額。予定がなければ0
+     */
+    public long getAmount(final int n, final long balance) {
+        long amount = 0;
+        for (Rule rule : rules) {
+            if (rule.matches(n))
+                amount += (rule.ratio > 0D) ? Math.round((double)balance * rule.ratio) : rule.amount;
+        }
+        return amount;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(rules);
+    }
+
+    /**
+     * 一定間隔の繰り上げ返済
+     */
+    private static final class Rule {
+        final int start;
+        final int interval;
+
+        /**
+         * 最後に繰り上げ返済を実施する返済回
+         */
+        final int last;
+
+        /**
+         * 一定額の場合の額。割合の場合は0
+         */
+        final long amount;
+
+        /**
+         * 元金残高に対する割合。一定額の場合は0
+         */
+        final double ratio;
+
+        Rule(final int start, final int interval, final int count, final long amount, final double ratio) {
+            if (start < 0)
+                throw new IllegalArgumentException("bad argument start: " + start);
+            if (interval < 1)
+                throw new IllegalArgumentException("bad argument interval: " + interval);
+            if (count < 1)
+                throw new IllegalArgumentException("bad argument count: " + count);
+            this.start = start;
+            this.interval = interval;
+            this.last = (int)Math.min(Integer.MAX_VALUE, start + (long)interval * (count - 1));
+            this.amount = amount;
+            this.ratio = ratio;
+        }
+
+        boolean matches(final int n) {
+            return n >= start && n <= last && (n - start) % interval == 0;
+        }
+
+        @Override
+        public String toString() {
+            final String what = (ratio > 0D) ? String.format("残高の%.3f%%", ratio * 100) : Long.toString(amount);
+            if (last == start)
+                return String.format("%d回 %s", start, what);
+            if (last == Integer.MAX_VALUE)
+                return String.format("%d回から%d回ごと完済まで %s", start, interval, what);
+            return String.format("%d回から%d回まで%d回ごと %s", start, last, interval, what);
+        }
+    }
+}
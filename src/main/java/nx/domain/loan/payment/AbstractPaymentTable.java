@@ -1,35 +1,374 @@
 package nx.domain.loan.payment;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.Spliterator;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+import nx.domain.loan.model.LoanEvent;
 import nx.domain.loan.model.LoanInfo;
+import nx.domain.loan.model.LoanInfo.PaymentType;
+import nx.domain.loan.model.LoanInfo.RateType;
 import nx.domain.loan.model.LoanResult;
+import nx.domain.loan.model.PaymentColumns;
 import nx.domain.loan.model.PaymentRecord;
+import nx.domain.loan.model.PrepaymentPlan;
 
 /**
  * 償還表計算の基底クラス
  */
 public abstract class AbstractPaymentTable implements Iterable<PaymentRecord> {
     protected final LoanInfo loanInfo;
-    protected final PaymentRecord table[];
+    /**
+     * 償還表の配列。サブクラスは配列を持たない償還表を変更する前に、変更可能な配列に置き換えることがある
+     */
+    protected PaymentColumns columns;
+
+    /**
+     * 集計用の累計。最初に集計するときに作成する
+     */
+    private PrefixSums sums;
+
+    /**
+     * これまでに処理した繰り上げ返済と利率変更
+     */
+    private final List<LoanEvent> history;
+
+    /**
+     * trueの場合は参照された返済回までしか計算しない
+     */
+    private boolean lazy;
+
+    /**
+     * この回より前の返済回は計算済み
+     */
+    private int calculated;
+
+    /**
+     * この回以降に償還表に反映していない条件変更がある。なければ返済回数
+     */
+    private int invalidFrom;
+
+    /**
+     * 遅延計算で当初の条件の返済回を生成する。条件変更を反映した後はnull
+     */
+    private ScheduleGenerator generator;
+
+    /**
+     * apply(PrepaymentPlan)で処理中の繰り上げ返済の予定。処理中でなければnull
+     */
+    private PrepaymentPlan plan;
+
+    /**
+     * 繰り上げ返済の予定の額をこの回より前まで決定済み
+     */
+    private int planPosition;
+
+    /**
+     * 繰り上げ返済の予定から決定した繰り上げ返済
+     */
+    private List<LoanEvent> planned;
 
     protected AbstractPaymentTable(final LoanInfo loanInfo) {
+        this(loanInfo, (loanInfo == null) ? null : new PaymentColumns(loanInfo.installments));
+    }
+
+    /**
+     * 遅延計算の償還表を作成<br>
+     * lazyがtrueの場合は返済回を計算せずに作成し、参照された返済回までを当初の条件で生成する
+     *
+     * @param loanInfo 借り入れの初期条件
+     * @param lazy 遅延計算する場合はtrue。falseの場合、サブクラスは全返済回を計算すること
+     */
+    protected AbstractPaymentTable(final LoanInfo loanInfo, final boolean lazy) {
+        this(loanInfo);
+        if (lazy) {
+            this.lazy = true;
+            this.calculated = 0;
+            this.generator = new ScheduleGenerator(loanInfo);
+            // 条件変更の再計算は生成していない返済回の利率も参照する
+            for (int i = 0; i < loanInfo.installments; i++)
+                columns.setRate(i, loanInfo.annualRate);
+        }
+    }
+
+    /**
+     * 既存の配列を参照する償還表を作成
+     *
+     * @param loanInfo 借り入れの初期条件
+     * @param columns 償還表の配列。大きさは返済回数と一致すること
+     */
+    protected AbstractPaymentTable(final LoanInfo loanInfo, final PaymentColumns columns) {
+        this(loanInfo, columns, Collections.<LoanEvent>emptyList());
+    }
+
+    /**
+     * 既存の配列と変更履歴を引き継ぐ償還表を作成
+     *
+     * @param loanInfo 借り入れの初期条件
+     * @param columns 償還表の配列。大きさは返済回数と一致すること
+     * @param history 配列の内容になるまでに処理した繰り上げ返済と利率変更
+     */
+    protected AbstractPaymentTable(final LoanInfo loanInfo, final PaymentColumns columns, final List<LoanEvent> history) {
         if (loanInfo == null)
             throw new IllegalArgumentException("loanInfo cannot be null");
+        if (columns == null || columns.size() != loanInfo.installments)
+            throw new IllegalArgumentException("bad columns");
 
         this.loanInfo = loanInfo;
-        this.table = new PaymentRecord[loanInfo.installments];
+        this.columns = columns;
+        if (history == null)
+            throw new IllegalArgumentException("history cannot be null");
+        this.history = new ArrayList<LoanEvent>(history);
+        this.calculated = loanInfo.installments;
+        this.invalidFrom = loanInfo.installments;
+    }
+
+    /**
+     * 既存の償還表と値を共有する償還表を作成<br>
+     * fork()の実装で利用する。複製元が遅延計算の場合は全返済回を計算してから複製する
+     *
+     * @param parent 複製元の償還表
+     */
+    protected AbstractPaymentTable(final AbstractPaymentTable parent) {
+        this(parent.loanInfo, parent.calculateAll().columns.fork(), parent.getHistory());
+        this.lazy = parent.lazy;
+    }
+
+    /**
+     * 返済方式に応じた償還表を作成<br>
+     * 元利均等ではConstantPaymentStandard、元金均等ではEqualPrincipalPaymentを作成する
+     *
+     * @param loanInfo 借り入れの初期条件
+     * @return 償還表
+     */
+    public static AbstractPaymentTable create(final LoanInfo loanInfo) {
+        if (loanInfo == null)
+            throw new IllegalArgumentException("loanInfo cannot be null");
+        if (loanInfo.paymentType == PaymentType.CONSTANT_PAYMENT)
+            return new ConstantPaymentStandard(loanInfo);
+        else
+            return new EqualPrincipalPayment(loanInfo);
+    }
+
+    /**
+     * 返済方式に応じた償還表を作成
+     *
+     * @param loanInfo 借り入れの初期条件
+     * @param lazy 遅延計算する場合はtrue
+     * @return 償還表
+     * @see #isLazy()
+     */
+    public static AbstractPaymentTable create(final LoanInfo loanInfo, final boolean lazy) {
+        if (loanInfo == null)
+            throw new IllegalArgumentException("loanInfo cannot be null");
+        if (loanInfo.paymentType == PaymentType.CONSTANT_PAYMENT)
+            return new ConstantPaymentStandard(loanInfo, lazy);
+        else
+            return new EqualPrincipalPayment(loanInfo, lazy);
+    }
+
+    /**
+     * 保存した配列と変更履歴から償還表を復元<br>
+     * 償還表は計算し直さない
+     *
+     * @param engineType ConstantPaymentStandard、ConstantPaymentSimple、EqualPrincipalPaymentのいずれか
+     * @param loanInfo 借り入れの初期条件
+     * @param columns 償還表の配列。大きさは返済回数と一致すること
+     * @param history 配列の内容になるまでに処理した繰り上げ返済と利率変更
+     * @return engineTypeの償還表
+     */
+    public static AbstractPaymentTable restore(final Class<? extends AbstractPaymentTable> engineType, final LoanInfo loanInfo,
+            final PaymentColumns columns, final List<LoanEvent> history) {
+        if (engineType == ConstantPaymentStandard.class)
+            return new ConstantPaymentStandard(loanInfo, columns, history);
+        else if (engineType == ConstantPaymentSimple.class)
+            return new ConstantPaymentSimple(loanInfo, columns, history);
+        else if (engineType == EqualPrincipalPayment.class)
+            return new EqualPrincipalPayment(loanInfo, columns, history);
+        else
+            throw new IllegalArgumentException("bad engineType: " + engineType);
+    }
+
+    /**
+     * 読み取り専用の配列を直接参照する償還表を作成<br>
+     * 計算状態や集計用の累計を作成せず、作成時に配列の値を読み込まない。集計は参照のたびに範囲内の値を合計する。
+     * fork()では配列をヒープ上に複製し、restore()と同様にengineTypeの償還表として復元する
+     *
+     * @param engineType ConstantPaymentStandard、ConstantPaymentSimple、EqualPrincipalPaymentのいずれか
+     * @param loanInfo 借り入れの初期条件
+     * @param columns 読み取り専用の償還表の配列。大きさは返済回数と一致すること
+     * @param history 配列の内容になるまでに処理した繰り上げ返済と利率変更
+     * @return 読み取り専用の償還表
+     */
+    public static AbstractPaymentTable view(final Class<? extends AbstractPaymentTable> engineType, final LoanInfo loanInfo,
+            final PaymentColumns columns, final List<LoanEvent> history) {
+        if (engineType != ConstantPaymentStandard.class && engineType != ConstantPaymentSimple.class
+                && engineType != EqualPrincipalPayment.class)
+            throw new IllegalArgumentException("bad engineType: " + engineType);
+        if (columns != null && !columns.isReadOnly())
+            throw new IllegalArgumentException("columns must be read-only");
+        return new ReadOnlyPaymentTable(engineType, loanInfo, columns, history);
+    }
+
+    /**
+     * @return 借り入れの初期条件
+     */
+    public LoanInfo getLoanInfo() {
+        return loanInfo;
+    }
+
+    /**
+     * これまでに処理した繰り上げ返済と利率変更<br>
+     * 償還表の作成時から処理した順に並ぶ。apply()で処理したものは返済回の順に並ぶ
+     *
+     * @return 変更できないリスト
+     */
+    public List<LoanEvent> getHistory() {
+        return Collections.unmodifiableList(history);
+    }
+
+    /**
+     * 変更履歴に追加<br>
+     * 繰り上げ返済や利率変更の実装から呼び出す
+     *
+     * @param event 処理した繰り上げ返済または利率変更
+     */
+    protected void addHistory(final LoanEvent event) {
+        history.add(event);
+    }
+
+    /**
+     * この償還表の複製を作成<br>
+     * 複製と複製元は変更されていない返済回の値を共有し、繰り上げ返済や利率変更で再計算した範囲だけがコピーされる。
+     * 複製の変更は複製元に影響せず、複製元の変更も複製に影響しない。
+     * 1つのローンについて多数の条件変更を比較する場合に、償還表を作成し直すより少ない時間とメモリで済む。
+     * 複製元の変更と同時には呼び出さないこと
+     *
+     * @return 変更可能な複製
+     */
+    public abstract AbstractPaymentTable fork();
+
+    /**
+     * この償還表の現在の内容を読み取り専用の償還表として取得<br>
+     * 返す償還表は以後変更されず、参照に使う値をすべてfinalのフィールドに保持するため、同期せずに複数のスレッドへ渡して同時に参照できる。
+     * この償還表は引き続き変更でき、その変更は返した償還表に影響しない。
+     * 値は複製と同様に共有するため、返済回数分のコピーは発生しない。
+     * 配列が既に読み取り専用の場合は複製せずにそのまま参照する
+     *
+     * @return 読み取り専用の償還表
+     */
+    public AbstractPaymentTable freeze() {
+        return new ReadOnlyPaymentTable(isReadOnly() ? this : fork());
+    }
+
+    /**
+     * 償還表の計算方式<br>
+     * 読み取り専用の償還表では、複製を作成せずに作成元の償還表のクラスを返す
+     *
+     * @return fork()で作成される償還表のクラス
+     */
+    public Class<? extends AbstractPaymentTable> getEngineType() {
+        return getClass();
+    }
+
+    /**
+     * @return 読み取り専用であればtrue
+     */
+    public boolean isReadOnly() {
+        return columns.isReadOnly();
+    }
+
+    /**
+     * 遅延計算の償還表かどうか<br>
+     * 遅延計算の償還表は、get()や集計などで参照された返済回までしか計算しない。
+     * ConstantPaymentStandardでは利率変更で再計算せず、変更した回以降が次に参照されたときに、それまでの変更をまとめて再計算する。
+     * 繰り上げ返済と、再計算する範囲に繰り上げ返済がある変更は、繰上額の減額を遅延計算しない場合と同じ時点で行うため、すぐに再計算する。
+     * その結果は、遅延計算しない償還表で同じ変更を処理した場合と同じになる。
+     * 既に取得したPaymentRecordは、再計算が必要な返済回を参照しても計算を行わない
+     *
+     * @return 遅延計算であればtrue
+     */
+    public boolean isLazy() {
+        return lazy;
+    }
+
+    /**
+     * to回目の前までを計算済みにする<br>
+     * 条件変更のない範囲は当初の条件で生成し、条件変更がある場合はcalculateRemaining()で最終回まで計算する
+     *
+     * @param to この回の前まで計算する
+     */
+    protected final void calculateTo(final int to) {
+        if (to <= calculated)
+            return;
+        if (generator != null) {
+            final int limit = Math.min(to, invalidFrom);
+            if (calculated < limit) {
+                generator.generate(columns, limit);
+                calculated = limit;
+            }
+            if (to <= calculated)
+                return;
+        }
+        calculateRemaining(calculated, generator != null);
+        calculated = loanInfo.installments;
+        invalidFrom = loanInfo.installments;
+        generator = null;
+    }
+
+    /**
+     * 全返済回を計算済みにする
+     *
+     * @return この償還表
+     */
+    final AbstractPaymentTable calculateAll() {
+        calculateTo(loanInfo.installments);
+        return this;
+    }
+
+    /**
+     * n回目以降を再計算が必要な範囲として記録<br>
+     * 遅延計算の償還表で、条件変更の再計算を次の参照まで遅らせる場合に呼び出す
+     *
+     * @param n 条件を変更した返済回
+     */
+    protected final void invalidate(final int n) {
+        if (n < calculated)
+            calculated = n;
+        if (n < invalidFrom)
+            invalidFrom = n;
+    }
+
+    /**
+     * 遅延計算で記録した条件変更を反映して、from回目から最終回までを計算<br>
+     * invalidate()を呼び出すサブクラスはオーバーライドすること
+     *
+     * @param from この回から計算する。この回より前は計算済み
+     * @param initial from回目より前が当初の条件で生成した返済回であればtrue
+     */
+    protected void calculateRemaining(final int from, final boolean initial) {
+        throw new UnsupportedOperationException("no pending changes");
     }
 
     /**
      * 償還表作成後に特定の回の返済情報を取得
      * @param n 返済回
-     * @return PaymentRecord n回目の返済情報
+     * @return PaymentRecord n回目の返済情報を参照するビュー
      */
     public PaymentRecord get(final int n) {
         if (n < 0 || n >= loanInfo.installments)
             throw new IndexOutOfBoundsException();
-        return table[n];
+        calculateTo(n + 1);
+        return new PaymentRecord(columns, n);
     }
 
     /**
@@ -47,29 +386,169 @@ public abstract class AbstractPaymentTable implements Iterable<PaymentRecord> {
     }
 
     /**
-     * 償還表から結果を集計
+     * この償還表のSpliteratorを取得<br>
+     * 分割した各部分は別のスレッドから参照されることがあるため、遅延計算の償還表は全返済回を計算してから作成する
+     */
+    @Override
+    public Spliterator<PaymentRecord> spliterator() {
+        calculateAll();
+        return new TableSpliterator(this, 0, loanInfo.installments);
+    }
+
+    /**
+     * 初回から最終回までの返済情報のStream
+     */
+    public Stream<PaymentRecord> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * 初回から最終回までの返済情報の並列Stream
+     */
+    public Stream<PaymentRecord> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
+
+    /**
+     * @return 各回の元金のStream
+     */
+    public LongStream principalStream() {
+        calculateAll();
+        return IntStream.range(0, loanInfo.installments).mapToLong(columns::getPrincipal);
+    }
+
+    /**
+     * @return 各回の利息のStream
+     */
+    public LongStream interestStream() {
+        calculateAll();
+        return IntStream.range(0, loanInfo.installments).mapToLong(columns::getInterest);
+    }
+
+    /**
+     * @return 各回の支払額合計のStream
+     */
+    public LongStream totalStream() {
+        calculateAll();
+        return IntStream.range(0, loanInfo.installments).mapToLong(columns::getTotal);
+    }
+
+    /**
+     * @return 各回の元金残高のStream
+     */
+    public LongStream balanceStream() {
+        calculateAll();
+        return IntStream.range(0, loanInfo.installments).mapToLong(columns::getBalance);
+    }
+
+    /**
+     * @return 各回の繰上額のStream
+     */
+    public LongStream prepaymentStream() {
+        calculateAll();
+        return IntStream.range(0, loanInfo.installments).mapToLong(columns::getPrepayment);
+    }
+
+    /**
+     * @return 各回の充当未払い利息のStream
+     */
+    public LongStream accruedInterestPaidStream() {
+        calculateAll();
+        return IntStream.range(0, loanInfo.installments).mapToLong(columns::getAccruedInterestPaid);
+    }
+
+    /**
+     * 償還表から結果を集計<br>
+     * 各項目の累計を保持しておき、償還表の変更後は変更された回以降の累計だけを計算し直す
      *
      * @see nx.domain.loan.model.LoanResult
      * @return LoanResultオブジェクト
      */
     public LoanResult getResult() {
+        return getResult(0, loanInfo.installments);
+    }
+
+    /**
+     * 償還表の一部の範囲を集計
+     *
+     * @param from この回から集計
+     * @param to この回の前まで集計
+     * @return LoanResultオブジェクト。元金残高と未払い利息残高はto-1回目の支払い後の額
+     */
+    public LoanResult getResult(final int from, final int to) {
+        if (from < 0 || to > loanInfo.installments || from > to)
+            throw new IndexOutOfBoundsException();
+        calculateTo(to);
+        if (sums == null)
+            sums = new PrefixSums(loanInfo.installments);
+        sums.update(columns, to);
         LoanResult result = new LoanResult();
-        for (PaymentRecord r : table) {
-            if (r == null) {
-                throw new IllegalStateException("PaymentRecord is null.");
-            }
-            result.addPrincipal(r.getPrincipal());
-            result.addInterest(r.getInterest());
-            result.addPrepayment(r.getPrepayment());
-            result.addAccruedInterestPaid(r.getAccruedInterestPaid());
+        result.addPrincipal(sums.principal(from, to));
+        result.addInterest(sums.interest(from, to));
+        result.addPrepayment(sums.prepayment(from, to));
+        result.addAccruedInterestPaid(sums.accruedInterestPaid(from, to));
+        if (to == 0) {
+            result.setBalance(loanInfo.amount);
+        }
+        else {
+            result.setBalance(columns.getBalance(to - 1));
+            result.setAccruedInterestBalance(columns.getAccruedInterestBalance(to - 1));
         }
-        result.setBalance(table[loanInfo.installments - 1].getBalance());
-        result.setAccruedInterestBalance(table[loanInfo.installments - 1].getAccruedInterestBalance());
         return result;
     }
 
     /**
-     * 繰り上げ返済処理
+     * @return 全返済回の利率
+     */
+    public double[] rates() {
+        calculateAll();
+        return columns.getRates();
+    }
+
+    /**
+     * @return 全返済回の元金
+     */
+    public long[] principals() {
+        calculateAll();
+        return columns.getPrincipals();
+    }
+
+    /**
+     * @return 全返済回の利息
+     */
+    public long[] interests() {
+        calculateAll();
+        return columns.getInterests();
+    }
+
+    /**
+     * @return 全返済回の支払額合計
+     */
+    public long[] totals() {
+        calculateAll();
+        return columns.getTotals();
+    }
+
+    /**
+     * @return 全返済回の元金残高
+     */
+    public long[] balances() {
+        calculateAll();
+        return columns.getBalances();
+    }
+
+    /**
+     * @return 全返済回の繰上額
+     */
+    public long[] prepayments() {
+        calculateAll();
+        return columns.getPrepayments();
+    }
+
+    /**
+     * 繰り上げ返済処理<br>
+     * 繰上額が元金残高(ConstantPaymentStandardでは未払い利息を含む)を超える場合は、その時点の残高までに減額して記録する。
+     * 以後の条件変更で残高が増えても、減額した額のまま再計算する
      *
      * @param n n回目に繰り上げ返済を実施
      * @param amount n回目の繰り上げ返済の額
@@ -83,4 +562,154 @@ public abstract class AbstractPaymentTable implements Iterable<PaymentRecord> {
      * @param newRate 新しい利率
      */
     public abstract void changeRate(int n, double newRate);
+
+    /**
+     * 複数の繰り上げ返済と利率変更をまとめて処理<br>
+     * 返済回の順(同じ返済回ではリストの順)にprepayment()やchangeRate()を呼び出した場合と同じ結果を、
+     * 償還表の1回の再計算で得る。
+     * ただしEqualPrincipalPaymentで同じ返済回に複数の繰り上げ返済がある場合は、その回以降を1回だけ計算するため、
+     * 1つずつ呼び出した場合と一致しないことがある。
+     * ConstantPaymentStandardで元金残高を超えて減額される繰り上げ返済がある場合も、1つずつ呼び出すと
+     * 後の回の変更で最終回の残債による計算し直しがなくなり、減額した回の残高が増えることがあるため、一致しないことがある
+     *
+     * @param events 繰り上げ返済と利率変更のリスト
+     */
+    public void apply(final List<LoanEvent> events) {
+        if (events == null)
+            throw new IllegalArgumentException("events cannot be null");
+        final List<LoanEvent> sorted = new ArrayList<LoanEvent>(events);
+        for (LoanEvent e : sorted) {
+            if (e == null)
+                throw new IllegalArgumentException("event cannot be null");
+            if (e.index >= loanInfo.installments)
+                throw new IllegalArgumentException("bad argument n: " + e.index);
+            if (e.type == LoanEvent.Type.RATE_CHANGE && loanInfo.rateType == RateType.FIXED)
+                throw new IllegalArgumentException("Rate is fixed.");
+        }
+        if (sorted.isEmpty())
+            return;
+        // Collections.sortは安定ソートなので同じ返済回の変更はリストの順に処理される
+        Collections.sort(sorted, EVENT_ORDER);
+        applyEvents(sorted);
+        history.addAll(sorted);
+    }
+
+    /**
+     * 全返済回の利率をまとめて変更<br>
+     * 現在の利率と異なる最初の回と、それ以降で前回と利率が異なる回の利率変更をapply()で処理するため、
+     * 利率が変わる回の数によらず償還表の再計算は1回で済む。現在の利率と同じであれば何もしない
+     *
+     * @param rates 返済回ごとの年利。大きさは返済回数と一致すること
+     */
+    public void changeRates(final double rates[]) {
+        if (rates == null || rates.length != loanInfo.installments)
+            throw new IllegalArgumentException("rates must have the same size as installments");
+        if (loanInfo.rateType == RateType.FIXED)
+            throw new IllegalArgumentException("Rate is fixed.");
+        for (double rate : rates) {
+            if (!(rate >= 0D))
+                throw new IllegalArgumentException("bad rate: " + rate);
+        }
+        int first = 0;
+        while (first < rates.length && rates[first] == columns.getRate(first))
+            first++;
+        final List<LoanEvent> events = new ArrayList<LoanEvent>();
+        for (int i = first; i < rates.length; i++) {
+            if (i == first || rates[i] != rates[i - 1])
+                events.add(LoanEvent.changeRate(i, rates[i]));
+        }
+        apply(events);
+    }
+
+    /**
+     * 利率の推移を指定して利率をまとめて変更<br>
+     * 各要素の利率を、その返済回から次の要素の返済回の前まで適用する。
+     * 最初の要素より前の返済回の利率は変わらない。利率変更はapply()でまとめて処理する
+     *
+     * @param timeline 利率を変更する返済回と新しい年利
+     */
+    public void changeRates(final SortedMap<Integer, Double> timeline) {
+        if (timeline == null)
+            throw new IllegalArgumentException("timeline cannot be null");
+        if (loanInfo.rateType == RateType.FIXED)
+            throw new IllegalArgumentException("Rate is fixed.");
+        final List<LoanEvent> events = new ArrayList<LoanEvent>(timeline.size());
+        for (Map.Entry<Integer, Double> e : timeline.entrySet()) {
+            if (e.getKey() == null || e.getKey() < 0)
+                throw new IllegalArgumentException("bad argument n: " + e.getKey());
+            if (e.getValue() == null || !(e.getValue() >= 0D))
+                throw new IllegalArgumentException("bad rate: " + e.getValue());
+            events.add(LoanEvent.changeRate(e.getKey(), e.getValue()));
+        }
+        apply(events);
+    }
+
+    /**
+     * 繰り上げ返済の予定をまとめて処理<br>
+     * 割合による繰り上げ返済の額は、その回の支払い前の元金残高から再計算の中で決めるため、
+     * 予定の数によらず償還表の再計算は1回で済む。
+     * 決定した額の繰り上げ返済を変更履歴に記録するため、変更履歴をapply()で処理すると同じ償還表になる
+     *
+     * @param plan 繰り上げ返済の予定
+     */
+    public void apply(final PrepaymentPlan plan) {
+        if (plan == null)
+            throw new IllegalArgumentException("plan cannot be null");
+        final int start = plan.getStart();
+        if (start >= loanInfo.installments)
+            return;
+        this.plan = plan;
+        this.planPosition = 0;
+        this.planned = new ArrayList<LoanEvent>();
+        try {
+            applyPlan(start);
+            history.addAll(planned);
+        }
+        finally {
+            this.plan = null;
+            this.planned = null;
+        }
+    }
+
+    /**
+     * 処理中の繰り上げ返済の予定からn回目の繰り上げ返済を決定<br>
+     * applyPlan()の再計算で、各回の繰り上げ返済を処理する前に返済回の順に呼び出す。
+     * 既に決定した回や元金残高が0の回ではnullを返すため、同じ回を計算し直す場合は償還表の繰上額をそのまま使う
+     *
+     * @param n 返済回
+     * @param balance n回目の支払い前の元金残高
+     * @return n回目の繰り上げ返済。予定がなければnull
+     */
+    protected final LoanEvent plannedPrepayment(final int n, final long balance) {
+        if (plan == null || n < planPosition)
+            return null;
+        planPosition = n + 1;
+        final long amount = (balance > 0) ? plan.getAmount(n, balance) : 0;
+        if (amount <= 0)
+            return null;
+        final LoanEvent e = LoanEvent.prepayment(n, amount);
+        planned.add(e);
+        return e;
+    }
+
+    /**
+     * start回目以降を1回だけ再計算し、各回でplannedPrepayment()の繰り上げ返済を処理
+     *
+     * @param start 最初に繰り上げ返済を予定している返済回
+     */
+    protected abstract void applyPlan(int start);
+
+    private static final Comparator<LoanEvent> EVENT_ORDER = new Comparator<LoanEvent>() {
+        @Override
+        public int compare(final LoanEvent e1, final LoanEvent e2) {
+            return (e1.index < e2.index) ? -1 : ((e1.index == e2.index) ? 0 : 1);
+        }
+    };
+
+    /**
+     * 返済回の順に並べた条件変更を償還表に反映
+     *
+     * @param events 検証済みで返済回の順に並んだ条件変更。空ではない
+     */
+    protected abstract void applyEvents(List<LoanEvent> events);
 }
@@ -0,0 +1,52 @@
+package nx.domain.loan.payment;
+
+/**
+ * 元利均等の支払額計算で使う係数 1 - (1 + 月利)^-残り返済回数 のキャッシュ<br>
+ * 同じ利率と残り返済回数の組み合わせは多くのローンで繰り返し現れるため、Math.powの結果を再利用する。
+ * 固定サイズの配列に格納し、別の組み合わせと衝突した場合は上書きする。
+ * 各要素は不変なので、複数のスレッドからロックなしで参照できる。
+ */
+final class AnnuityFactorCache {
+    private static final int SIZE = 4096;
+    private static final Entry entries[] = new Entry[SIZE];
+
+    private AnnuityFactorCache() {
+    }
+
+    /**
+     * @param monthlyRate 月利
+     * @param remaining 残りの返済回数
+     * @return 1 - (1 + monthlyRate)^-remaining
+     */
+    static double get(final double monthlyRate, final int remaining) {
+        final long rateBits = Double.doubleToLongBits(monthlyRate);
+        final int slot = slot(rateBits, remaining);
+        final Entry e = entries[slot];
+        if (e != null && e.rateBits == rateBits && e.remaining == remaining)
+            return e.factor;
+
+        final double factor = 1.0D - (Math.pow(1.0D + monthlyRate,  -1.0D * remaining));
+        entries[slot] = new Entry(rateBits, remaining, factor);
+        return factor;
+    }
+
+    private static int slot(final long rateBits, final int remaining) {
+        long h = (rateBits ^ (rateBits >>> 32)) * 0x9E3779B97F4A7C15L + remaining;
+        h ^= (h >>> 29);
+        h *= 0xBF58476D1CE4E5B9L;
+        h ^= (h >>> 32);
+        return (int)h & (SIZE - 1);
+    }
+
+    private static final class Entry {
+        final long   rateBits;
+        final int    remaining;
+        final double factor;
+
+        Entry(final long rateBits, final int remaining, final double factor) {
+            this.rateBits  = rateBits;
+            this.remaining = remaining;
+            this.factor    = factor;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package nx.domain.loan.payment;
+
+import nx.domain.loan.model.LoanInfo;
+
+/**
+ * 償還表の再計算の計測結果を受け取る<br>
+ * ConstantPaymentStandard.setCalculationListener()で設定する。
+ * 複数のスレッドから同時に呼び出されることがある
+ */
+public interface CalculationListener {
+    /**
+     * 再計算1回ごとに呼び出される
+     *
+     * @param loanInfo 再計算した償還表の借り入れ条件
+     * @param start 再計算を開始した返済回
+     * @param rows 再計算した返済回の数。最終回の残債による再計算を含む
+     * @param depth 最終回の残債による再計算を含めた計算の段数。再計算がなければ1
+     * @param capHits 5年･125%ルールにより支払月額を制限した回数
+     * @param nanos 再計算にかかった時間(ナノ秒)
+     */
+    void recalculated(LoanInfo loanInfo, int start, int rows, int depth, int capHits, long nanos);
+}
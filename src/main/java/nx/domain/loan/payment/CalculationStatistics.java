@@ -0,0 +1,131 @@
+package nx.domain.loan.payment;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import nx.domain.loan.model.LoanInfo;
+
+/**
+ * 償還表の再計算の統計情報を集計するCalculationListener<br>
+ * register()でJMXのMBeanとして登録すると、JConsoleなどから参照できる
+ */
+public class CalculationStatistics implements CalculationListener, CalculationStatisticsMBean {
+    /**
+     * MBeanの登録名
+     */
+    public static final String OBJECT_NAME = "nx.domain.loan:type=CalculationStatistics";
+
+    private final LongAdder recalculations = new LongAdder();
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder capHits = new LongAdder();
+    private final LongAdder totalTime = new LongAdder();
+    private final AtomicInteger maxDepth = new AtomicInteger();
+    private final AtomicLong maxTime = new AtomicLong();
+
+    /**
+     * 統計情報を作成してMBeanとして登録し、ConstantPaymentStandardの通知先に設定
+     *
+     * @return 登録した統計情報
+     */
+    public static CalculationStatistics register() {
+        final CalculationStatistics statistics = new CalculationStatistics();
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            final ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name))
+                server.unregisterMBean(name);
+            server.registerMBean(statistics, name);
+        }
+        catch (JMException e) {
+            throw new IllegalStateException(e);
+        }
+        ConstantPaymentStandard.setCalculationListener(statistics);
+        return statistics;
+    }
+
+    /**
+     * MBeanの登録を解除し、ConstantPaymentStandardの計測を停止
+     */
+    public static void unregister() {
+        ConstantPaymentStandard.setCalculationListener(null);
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            final ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name))
+                server.unregisterMBean(name);
+        }
+        catch (JMException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void recalculated(final LoanInfo loanInfo, final int start, final int rows, final int depth, final int capHits, final long nanos) {
+        recalculations.increment();
+        this.rows.add(rows);
+        retries.add(depth - 1);
+        this.capHits.add(capHits);
+        totalTime.add(nanos);
+        maxDepth.accumulateAndGet(depth, Math::max);
+        maxTime.accumulateAndGet(nanos, Math::max);
+    }
+
+    @Override
+    public long getRecalculationCount() {
+        return recalculations.sum();
+    }
+
+    @Override
+    public long getRowCount() {
+        return rows.sum();
+    }
+
+    @Override
+    public int getMaxDepth() {
+        return maxDepth.get();
+    }
+
+    @Override
+    public long getRetryCount() {
+        return retries.sum();
+    }
+
+    @Override
+    public long getCapHitCount() {
+        return capHits.sum();
+    }
+
+    @Override
+    public long getTotalTimeNanos() {
+        return totalTime.sum();
+    }
+
+    @Override
+    public long getMaxTimeNanos() {
+        return maxTime.get();
+    }
+
+    @Override
+    public long getAverageTimeNanos() {
+        final long count = recalculations.sum();
+        return (count == 0) ? 0 : totalTime.sum() / count;
+    }
+
+    @Override
+    public void reset() {
+        recalculations.reset();
+        rows.reset();
+        retries.reset();
+        capHits.reset();
+        totalTime.reset();
+        maxDepth.set(0);
+        maxTime.set(0);
+    }
+}
@@ -0,0 +1,51 @@
+package nx.domain.loan.payment;
+
+/**
+ * 償還表の再計算の統計情報
+ */
+public interface CalculationStatisticsMBean {
+    /**
+     * @return 再計算の回数
+     */
+    long getRecalculationCount();
+
+    /**
+     * @return 再計算した返済回の合計
+     */
+    long getRowCount();
+
+    /**
+     * @return 最終回の残債による再計算を含めた計算の段数の最大値
+     */
+    int getMaxDepth();
+
+    /**
+     * @return 最終回の残債により途中から計算し直した回数
+     */
+    long getRetryCount();
+
+    /**
+     * @return 5年･125%ルールにより支払月額を制限した回数
+     */
+    long getCapHitCount();
+
+    /**
+     * @return 再計算にかかった時間の合計(ナノ秒)
+     */
+    long getTotalTimeNanos();
+
+    /**
+     * @return 再計算1回にかかった時間の最大値(ナノ秒)
+     */
+    long getMaxTimeNanos();
+
+    /**
+     * @return 再計算1回にかかった時間の平均(ナノ秒)
+     */
+    long getAverageTimeNanos();
+
+    /**
+     * 統計情報をクリア
+     */
+    void reset();
+}
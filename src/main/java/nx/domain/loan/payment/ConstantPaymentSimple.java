@@ -1,8 +1,13 @@
 package nx.domain.loan.payment;
 
+import java.util.Collections;
+import java.util.List;
+
+import nx.domain.loan.model.LoanEvent;
 import nx.domain.loan.model.LoanInfo;
 import nx.domain.loan.model.LoanInfo.PrepaymentType;
 import nx.domain.loan.model.LoanInfo.RateType;
+import nx.domain.loan.model.PaymentColumns;
 import nx.domain.loan.model.PaymentRecord;
 
 /**
@@ -14,6 +19,42 @@ public class ConstantPaymentSimple extends ConstantPaymentStandard {
         super(loanInfo);
     }
 
+    /**
+     * @param loanInfo 借り入れの初期条件
+     * @param lazy 参照された返済回までしか計算しない場合はtrue。
+     *             繰り上げ返済や利率変更は既存の返済回から計算するため、その時点で全返済回を計算する
+     * @see AbstractPaymentTable#isLazy()
+     */
+    public ConstantPaymentSimple(final LoanInfo loanInfo, final boolean lazy) {
+        super(loanInfo, lazy);
+    }
+
+    /**
+     * 保存した償還表を復元<br>
+     * 償還表は計算し直さない
+     *
+     * @param loanInfo 借り入れの初期条件
+     * @param columns 計算済みの償還表
+     * @param history 償還表の内容になるまでに処理した繰り上げ返済と利率変更
+     */
+    public ConstantPaymentSimple(final LoanInfo loanInfo, final PaymentColumns columns, final List<LoanEvent> history) {
+        super(loanInfo, columns, history);
+    }
+
+    /**
+     * 複製を作成
+     *
+     * @param parent 複製元の償還表
+     */
+    protected ConstantPaymentSimple(final ConstantPaymentSimple parent) {
+        super(parent);
+    }
+
+    @Override
+    public ConstantPaymentSimple fork() {
+        return new ConstantPaymentSimple(this);
+    }
+
     /**
      * 繰り上げ返済処理
      *
@@ -26,16 +67,19 @@ public class ConstantPaymentSimple extends ConstantPaymentStandard {
         if (amount <= 0)
             throw new IllegalArgumentException("bad amount: " + amount);
 
+        addHistory(LoanEvent.prepayment(n, amount));
+        calculateAll();
+
         /*
          * n回目の再計算
          */
-        final PaymentRecord r = table[n];
+        final PaymentRecord r = new PaymentRecord(columns, n);
         if (amount > r.getBalance())
             amount = r.getBalance();
         r.setPrepayment(amount);
         long total = r.getPrincipal() + r.getInterest() + amount;
         r.setTotal(total);
-        long balance = (n == 0) ? loanInfo.amount : table[n - 1].getBalance();
+        long balance = (n == 0) ? loanInfo.amount : columns.getBalance(n - 1);
         r.setBalance(balance - r.getPrincipal() - amount);
 
         if (n == loanInfo.installments - 1)
@@ -57,11 +101,11 @@ public class ConstantPaymentSimple extends ConstantPaymentStandard {
      * @param n 繰り上げ返済を実施した返済回
      */
     private void prepaymentReducePrincipal(int n) {
-        PaymentRecord prev, r;
+        final PaymentRecord prev = new PaymentRecord(columns, n), r = new PaymentRecord(columns, n);
         long newMonthlyAmount = 0;
         for (int i = n + 1; i < loanInfo.installments; i++) {
-            prev = table[i - 1];
-            r = table[i];
+            prev.moveTo(i - 1);
+            r.moveTo(i);
             if (prev.getPrepayment() > 0)
                 newMonthlyAmount = getMonthlyPayment(i, r.getRate(), prev.getBalance());
             long interest = Math.round((double)(prev.getBalance()) * r.getRate() / 12.0D);
@@ -82,10 +126,11 @@ public class ConstantPaymentSimple extends ConstantPaymentStandard {
      * @param n 繰り上げ返済を実施した返済回
      */
     private void prepaymentShortenDuration(int n) {
-        long monthlyPayment = table[n].getPrincipal() + table[n].getInterest();
+        long monthlyPayment = columns.getPrincipal(n) + columns.getInterest(n);
+        final PaymentRecord prev = new PaymentRecord(columns, n), r = new PaymentRecord(columns, n);
         for (int i = ++n; i < loanInfo.installments; i++) {
-            PaymentRecord prev = table[i - 1];
-            PaymentRecord r = table[i];
+            prev.moveTo(i - 1);
+            r.moveTo(i);
             long interest = Math.round((double)(prev.getBalance()) * r.getRate() / 12.0D);
             r.setInterest(interest);
             long newPrincipal = monthlyPayment - interest;
@@ -112,14 +157,14 @@ public class ConstantPaymentSimple extends ConstantPaymentStandard {
         if (newRate < 0D)
             throw new IllegalArgumentException("bad rate: " + newRate);
 
-        PaymentRecord r = table[n];
-        PaymentRecord prev = table[n - 1];
-        long monthlyPayment = getMonthlyPayment(n, newRate, prev.getBalance());
+        addHistory(LoanEvent.changeRate(n, newRate));
+        calculateAll();
+        final PaymentRecord r = new PaymentRecord(columns, n);
+        long monthlyPayment = getMonthlyPayment(n, newRate, (n == 0) ? loanInfo.amount : columns.getBalance(n - 1));
         for (int i = n; i < loanInfo.installments; i++) {
-            prev = table[i - 1];
-            r = table[i];
+            r.moveTo(i);
             r.setRate(newRate);
-            long balance = prev.getBalance();
+            long balance = (i == 0) ? loanInfo.amount : columns.getBalance(i - 1);
             long interest = Math.round((double)balance * newRate / 12.0D);
             r.setInterest(interest);
             r.setPrincipal(monthlyPayment - interest);
@@ -127,4 +172,132 @@ public class ConstantPaymentSimple extends ConstantPaymentStandard {
             r.setBalance(balance - r.getPrincipal() - r.getPrepayment());
         }
     }
+
+    /**
+     * 条件変更をまとめて処理<br>
+     * 最初の変更回から最終回まで、各回の直前の変更に応じた方法で1回だけ再計算する。
+     *
+     * @param events 返済回の順に並んだ条件変更
+     */
+    @Override
+    protected void applyEvents(final List<LoanEvent> events) {
+        recalculateEvents(events, events.get(0).index);
+    }
+
+    /**
+     * 予定した繰り上げ返済の額を再計算の中で決めながら、start回目以降を1回だけ再計算
+     *
+     * @param start 最初に繰り上げ返済を予定している返済回
+     */
+    @Override
+    protected void applyPlan(final int start) {
+        recalculateEvents(Collections.<LoanEvent>emptyList(), start);
+    }
+
+    /**
+     * start回目から最終回まで、各回の直前の変更に応じた方法で1回だけ再計算<br>
+     * 各回では条件変更を処理した後に、予定による繰り上げ返済を処理する
+     *
+     * @param events 返済回の順に並んだ条件変更
+     * @param start この回から再計算する。最初の条件変更の回以前
+     */
+    private void recalculateEvents(final List<LoanEvent> events, final int start) {
+        calculateAll();
+        Mode mode = Mode.NONE;
+        boolean rateChanged = false;
+        double rate = 0D;
+        long monthlyPayment = 0;
+        int next = 0;
+        final PaymentRecord r = new PaymentRecord(columns, start);
+        for (int i = start; i < loanInfo.installments; i++) {
+            r.moveTo(i);
+            final long balance = (i == 0) ? loanInfo.amount : columns.getBalance(i - 1);
+            if (rateChanged)
+                r.setRate(rate);
+
+            // 前回までの変更に従って今回を再計算
+            if (mode == Mode.RATE_CHANGE) {
+                recalculateRecord(r, balance, monthlyPayment, false);
+            }
+            else if (mode != Mode.NONE) {
+                if (mode == Mode.REDUCE_PRINCIPAL && columns.getPrepayment(i - 1) > 0)
+                    monthlyPayment = getMonthlyPayment(i, r.getRate(), balance);
+                recalculateRecord(r, balance, monthlyPayment, true);
+            }
+
+            // 今回の変更
+            while (true) {
+                LoanEvent e;
+                if (next < events.size() && events.get(next).index == i)
+                    e = events.get(next++);
+                else if ((e = plannedPrepayment(i, balance)) == null)
+                    break;
+                if (e.type == LoanEvent.Type.RATE_CHANGE) {
+                    rate = e.rate;
+                    rateChanged = true;
+                    r.setRate(rate);
+                    monthlyPayment = getMonthlyPayment(i, rate, balance);
+                    recalculateRecord(r, balance, monthlyPayment, false);
+                    mode = Mode.RATE_CHANGE;
+                }
+                else {
+                    long amount = e.amount;
+                    if (amount > r.getBalance())
+                        amount = r.getBalance();
+                    r.setPrepayment(amount);
+                    r.setTotal(r.getPrincipal() + r.getInterest() + amount);
+                    r.setBalance(balance - r.getPrincipal() - amount);
+                    if (loanInfo.prepaymentType == PrepaymentType.AMOUNT) {
+                        monthlyPayment = 0;
+                        mode = Mode.REDUCE_PRINCIPAL;
+                    }
+                    else {
+                        monthlyPayment = r.getPrincipal() + r.getInterest();
+                        mode = Mode.SHORTEN_DURATION;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 支払月額から今回の元金と利息を再計算
+     *
+     * @param r 処理対象月の支払情報
+     * @param balance 前回の元金残額
+     * @param monthlyPayment 支払月額
+     * @param limit 元金を前回の元金残額までに制限する場合はtrue
+     */
+    private void recalculateRecord(final PaymentRecord r, final long balance, final long monthlyPayment, final boolean limit) {
+        long interest = Math.round((double)balance * r.getRate() / 12.0D);
+        r.setInterest(interest);
+        long principal = monthlyPayment - interest;
+        if (limit && principal > balance)
+            principal = balance;
+        r.setPrincipal(principal);
+        r.setTotal(principal + interest + r.getPrepayment());
+        r.setBalance(balance - principal - r.getPrepayment());
+    }
+
+    /**
+     * 直前の条件変更による再計算の方法
+     */
+    private enum Mode {
+        /**
+         * 再計算しない
+         */
+        NONE,
+        /**
+         * changeRate()と同じ
+         */
+        RATE_CHANGE,
+        /**
+         * prepaymentReducePrincipal()と同じ
+         */
+        REDUCE_PRINCIPAL,
+        /**
+         * prepaymentShortenDuration()と同じ
+         */
+        SHORTEN_DURATION
+    }
 }
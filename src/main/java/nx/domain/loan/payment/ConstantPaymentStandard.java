@@ -1,9 +1,14 @@
 package nx.domain.loan.payment;
 
+import java.util.Arrays;
+import java.util.List;
+
+import nx.domain.loan.model.LoanEvent;
 import nx.domain.loan.model.LoanInfo;
 import nx.domain.loan.model.LoanInfo.PaymentType;
 import nx.domain.loan.model.LoanInfo.PrepaymentType;
 import nx.domain.loan.model.LoanInfo.RateType;
+import nx.domain.loan.model.PaymentColumns;
 import nx.domain.loan.model.PaymentRecord;
 
 /**
@@ -16,46 +21,206 @@ public class ConstantPaymentStandard extends AbstractPaymentTable {
     protected final int  RATE_CHANGE_INTERVAL = 60;
     protected final long initialMonthlyPayment;
 
+    /**
+     * 計算状態を記録する間隔(返済回数)
+     */
+    private int checkpointInterval = RATE_CHANGE_INTERVAL;
+
+    /**
+     * 初回からの再計算で記録した計算状態(チェックポイント)<br>
+     * 要素kは k * checkpointInterval 回目の計算開始時点の状態。
+     * 記録した状態は変更せず、記録し直す場合は新しい状態に置き換えるため、複製と共有できる
+     */
+    private State checkpoints[];
+
+    /**
+     * この回より前の償還表とcheckpointsは初回からの再計算の結果と一致する<br>
+     * 0の場合は有効なチェックポイントがない
+     */
+    private int checkpointLimit;
+
+    /**
+     * 最終回の残債による計算し直しを含めた計算の段数の上限
+     */
+    private int maxPasses;
+
+    /**
+     * 直前の計算で最終回の元金残高が0になった場合はtrue
+     */
+    private boolean converged = true;
+
+    /**
+     * 繰上額を設定した最後の返済回。繰り上げ返済がなければ-1
+     */
+    private int lastPrepayment = -1;
+
+    /**
+     * 再計算の計測結果の通知先。nullの場合は計測しない
+     */
+    private static volatile CalculationListener listener;
+
     public ConstantPaymentStandard(final LoanInfo loanInfo) {
-        super(loanInfo);
+        this(loanInfo, false);
+    }
+
+    /**
+     * @param loanInfo 借り入れの初期条件
+     * @param lazy 参照された返済回までしか計算しない場合はtrue
+     * @see AbstractPaymentTable#isLazy()
+     */
+    public ConstantPaymentStandard(final LoanInfo loanInfo, final boolean lazy) {
+        super(loanInfo, lazy);
         if (loanInfo.paymentType != PaymentType.CONSTANT_PAYMENT)
             throw new IllegalArgumentException("bad payment type");
         initialMonthlyPayment = getMonthlyPayment(0, loanInfo.annualRate, loanInfo.amount);
-        initialize();
+        checkpoints = new State[(loanInfo.installments - 1) / checkpointInterval + 1];
+        maxPasses = (loanInfo.installments - 1) / RATE_CHANGE_INTERVAL + 1;
+        if (!lazy)
+            initialize();
     }
 
     /**
-     * 償還表を初期化
+     * 保存した償還表を復元<br>
+     * 償還表は計算し直さない。以後の繰り上げ返済や利率変更では初回から再計算する
+     *
+     * @param loanInfo 借り入れの初期条件
+     * @param columns 計算済みの償還表
+     * @param history 償還表の内容になるまでに処理した繰り上げ返済と利率変更
      */
-    private void initialize() {
+    public ConstantPaymentStandard(final LoanInfo loanInfo, final PaymentColumns columns, final List<LoanEvent> history) {
+        super(loanInfo, columns, history);
+        if (loanInfo.paymentType != PaymentType.CONSTANT_PAYMENT)
+            throw new IllegalArgumentException("bad payment type");
+        initialMonthlyPayment = getMonthlyPayment(0, loanInfo.annualRate, loanInfo.amount);
+        checkpoints = new State[(loanInfo.installments - 1) / checkpointInterval + 1];
+        maxPasses = (loanInfo.installments - 1) / RATE_CHANGE_INTERVAL + 1;
+        converged = (columns.getBalance(loanInfo.installments - 1) == 0);
         for (int i = 0; i < loanInfo.installments; i++) {
-            table[i] = createRecord(i);
-        }
-        // 最終回の残元金が0でない場合は0になるように調整
-        PaymentRecord r = table[loanInfo.installments - 1];
-        if (r.getBalance() != 0) {
-            r.setPrincipal(r.getPrincipal() + r.getBalance());
-            r.setTotal(r.getTotal() + r.getBalance());
-            r.setBalance(0);
+            if (columns.getPrepayment(i) > 0)
+                lastPrepayment = i;
         }
     }
 
     /**
-     * ローン設定当初のn回目の返済情報を作成
+     * 複製を作成
+     *
+     * @param parent 複製元の償還表
+     */
+    protected ConstantPaymentStandard(final ConstantPaymentStandard parent) {
+        super(parent);
+        initialMonthlyPayment = parent.initialMonthlyPayment;
+        checkpointInterval = parent.checkpointInterval;
+        // 記録済みの状態は変更されないため、配列だけを複製する
+        checkpoints = parent.checkpoints.clone();
+        checkpointLimit = parent.checkpointLimit;
+        maxPasses = parent.maxPasses;
+        converged = parent.converged;
+        lastPrepayment = parent.lastPrepayment;
+    }
+
+    @Override
+    public ConstantPaymentStandard fork() {
+        return new ConstantPaymentStandard(this);
+    }
+
+    /**
+     * 償還表を初期化
+     */
+    private void initialize() {
+        new ScheduleGenerator(loanInfo).generate(columns);
+    }
+
+    /**
+     * 再計算の計測結果の通知先を設定<br>
+     * すべてのConstantPaymentStandardの再計算が通知される
+     *
+     * @param listener 通知先。nullの場合は計測しない
+     */
+    public static void setCalculationListener(final CalculationListener listener) {
+        ConstantPaymentStandard.listener = listener;
+    }
+
+    /**
+     * @return 再計算の計測結果の通知先。設定されていない場合はnull
+     */
+    public static CalculationListener getCalculationListener() {
+        return listener;
+    }
+
+    /**
+     * 最終回の残債による計算し直しを含めた計算の段数の上限を設定<br>
+     * 既定値は5年ごとの見直し時点の数で、この場合は上限に達することはない。
+     * 小さい値を設定すると再計算の時間の上限は下がるが、最終回に元金が残ることがある
      *
-     * @param n 返済回。初回は0
-     * @return PaymentRecord n回目の返済情報
+     * @param maxPasses 計算の段数の上限。1の場合は計算し直さない
      */
-    private PaymentRecord createRecord(final int n) {
-        final PaymentRecord r = new PaymentRecord();
-        r.setIndex(n);
-        long currentBalance = (n == 0) ? loanInfo.amount : table[n - 1].getBalance();
-        r.setRate(loanInfo.annualRate);
-        r.setTotal(initialMonthlyPayment);
-        r.setInterest(Math.round((double)currentBalance * loanInfo.annualRate / 12.0D));
-        r.setPrincipal(initialMonthlyPayment - r.getInterest());
-        r.setBalance(currentBalance - r.getPrincipal());
-        return r;
+    public void setMaxPasses(final int maxPasses) {
+        if (maxPasses < 1)
+            throw new IllegalArgumentException("bad argument maxPasses: " + maxPasses);
+        this.maxPasses = maxPasses;
+        // 記録済みの状態は以前の上限による計算結果のため破棄
+        checkpointLimit = 0;
+    }
+
+    /**
+     * 計算状態を記録する間隔を設定<br>
+     * 繰り上げ返済や利率変更では、変更した回以前で最も近い記録済みの状態から再計算する。
+     * 既定値は5年ごとの見直しと同じ60回で、間隔を短くすると再計算する回数が減る代わりに記録する状態が増える。
+     * 記録済みの状態は破棄するため、次の変更では初回から再計算する
+     *
+     * @param interval 記録する間隔。1以上
+     */
+    public void setCheckpointInterval(final int interval) {
+        if (interval < 1)
+            throw new IllegalArgumentException("bad argument interval: " + interval);
+        checkpointInterval = interval;
+        checkpoints = new State[(loanInfo.installments - 1) / interval + 1];
+        checkpointLimit = 0;
+    }
+
+    /**
+     * @return 計算状態を記録する間隔
+     */
+    public int getCheckpointInterval() {
+        return checkpointInterval;
+    }
+
+    /**
+     * @return 計算の段数の上限
+     */
+    public int getMaxPasses() {
+        return maxPasses;
+    }
+
+    /**
+     * 直前の再計算が収束したかどうか<br>
+     * 償還表作成直後はtrue
+     *
+     * @return 最終回の元金残高が0になった場合はtrue。段数の上限に達した場合や、支払月額を増やせずに元金が残った場合はfalse
+     */
+    public boolean isConverged() {
+        calculateAll();
+        return converged;
+    }
+
+    /**
+     * 全返済回の利率を設定して初回から1回だけ再計算<br>
+     * RateScenarioEngineが作業用の償還表を使い回すために利用する。変更履歴には記録しない
+     *
+     * @param rates 返済回ごとの利率。大きさは返済回数と一致すること
+     * @return 計算後の償還表で、5年･125%ルールにより支払月額を制限した回数
+     */
+    int calculateScenario(final double rates[]) {
+        calculateAll();
+        for (int i = 0; i < loanInfo.installments; i++)
+            columns.setRate(i, rates[i]);
+        final Measurement m = new Measurement();
+        final long begin = System.nanoTime();
+        calculate(0, startState(0), true, m);
+        final CalculationListener l = listener;
+        if (l != null)
+            l.recalculated(loanInfo, 0, m.rows, m.depth, m.capHits, System.nanoTime() - begin);
+        return m.capped;
     }
 
     /**
@@ -68,8 +233,20 @@ public class ConstantPaymentStandard extends AbstractPaymentTable {
      * @return 一回の新しい支払額
      */
     protected long getMonthlyPayment(final int n, final double rate, final long balance) {
+        return calculateMonthlyPayment(rate, balance, loanInfo.installments - n);
+    }
+
+    /**
+     * 一回の支払額の計算(元金+利息)
+     *
+     * @param rate 年利
+     * @param balance 元金残額
+     * @param remaining 残りの返済回数
+     * @return 一回の支払額
+     */
+    static long calculateMonthlyPayment(final double rate, final long balance, final int remaining) {
         final double monthlyRate = rate / 12.0D;
-        return Math.round((double)balance * monthlyRate / (1.0D - (Math.pow(1.0D + monthlyRate,  -1.0D * (loanInfo.installments - n)))));
+        return Math.round((double)balance * monthlyRate / AnnuityFactorCache.get(monthlyRate, remaining));
     }
 
     /**
@@ -85,8 +262,10 @@ public class ConstantPaymentStandard extends AbstractPaymentTable {
         if (amount <= 0)
             throw new IllegalArgumentException("bad amount: " + amount);
 
-        table[n].setPrepayment(amount);
-        calculate(0);
+        addHistory(LoanEvent.prepayment(n, amount));
+        columns.setPrepayment(n, amount);
+        lastPrepayment = Math.max(lastPrepayment, n);
+        recalculate(n);
     }
 
     /**
@@ -105,10 +284,123 @@ public class ConstantPaymentStandard extends AbstractPaymentTable {
         if (newRate < 0D)
             throw new IllegalArgumentException("bad rate: " + newRate);
 
-        for (int i = n; i < table.length; i++) {
-            table[i].setRate(newRate);
+        addHistory(LoanEvent.changeRate(n, newRate));
+        setRate(n, loanInfo.installments, newRate);
+        recalculate(n);
+    }
+
+    /**
+     * 繰り上げ返済額と利率をすべて設定してから、最初の変更回以降を1回だけ再計算
+     *
+     * @param events 返済回の順に並んだ条件変更
+     */
+    @Override
+    protected void applyEvents(final List<LoanEvent> events) {
+        LoanEvent rateChange = null;
+        for (LoanEvent e : events) {
+            if (e.type == LoanEvent.Type.PREPAYMENT) {
+                columns.setPrepayment(e.index, e.amount);
+                lastPrepayment = Math.max(lastPrepayment, e.index);
+            }
+            else {
+                // 直前の利率変更はこの回の前まで適用
+                if (rateChange != null)
+                    setRate(rateChange.index, e.index, rateChange.rate);
+                rateChange = e;
+            }
+        }
+        if (rateChange != null)
+            setRate(rateChange.index, loanInfo.installments, rateChange.rate);
+        recalculate(events.get(0).index);
+    }
+
+    /**
+     * 予定した繰り上げ返済の額を再計算の中で決めながら、start回目以降を再計算
+     *
+     * @param start 最初に繰り上げ返済を予定している返済回
+     */
+    @Override
+    protected void applyPlan(final int start) {
+        calculateAll();
+        recalculateFrom(start);
+    }
+
+    /**
+     * from回目からto回目の前までの利率を設定
+     */
+    private void setRate(final int from, final int to, final double rate) {
+        for (int i = from; i < to; i++) {
+            columns.setRate(i, rate);
         }
-        calculate(0);
+    }
+
+    /**
+     * n回目以降の返済条件を変更した後に償還表を再計算<br>
+     * n回目以前で最も近いチェックポイントから、その時点の返済月額と未払い利息残高を引き継いで再計算する。
+     * 結果はcalculate(0)で初回から再計算した場合と同じになる。
+     * 遅延計算の場合は再計算せず、変わる可能性のある範囲が次に参照されたときに再計算する。
+     * ただしその範囲に繰り上げ返済がある場合は、元金残高を超える繰上額をこの時点の残元金で減額して記録するため、
+     * 遅延計算しない場合と同じくすぐに再計算する。
+     *
+     * @param n 返済条件を変更した返済回
+     */
+    protected void recalculate(final int n) {
+        if (!isLazy()) {
+            recalculateFrom(n);
+            return;
+        }
+        // 最終回の残債による計算し直しは、最後に支払月額を見直した回の5年後から行うため、
+        // 再計算を始めるチェックポイントでのその回の5年後以降はn回目より前でも変わることがある
+        final int k = Math.min(n, checkpointLimit) / checkpointInterval;
+        final int lastRateChange = (k == 0) ? 0 : checkpoints[k].lastRateChange;
+        final int from = Math.min(n, lastRateChange + RATE_CHANGE_INTERVAL);
+        invalidate(from);
+        if (lastPrepayment >= from)
+            calculateAll();
+    }
+
+    /**
+     * 遅延計算で記録した条件変更を反映<br>
+     * from回目より前が当初の条件で生成した返済回であれば、その最後の状態から計算を続ける
+     *
+     * @param from この回から計算する
+     * @param initial from回目より前が当初の条件で生成した返済回であればtrue
+     */
+    @Override
+    protected void calculateRemaining(final int from, final boolean initial) {
+        if (!initial) {
+            recalculateFrom(from);
+            return;
+        }
+        // 当初の条件では支払月額の見直しがないため、各チェックポイントの状態は直前の残元金だけで決まる
+        for (int k = 0; k * checkpointInterval <= from && k < checkpoints.length; k++)
+            checkpoints[k] = initialState(k * checkpointInterval);
+        calculate(from, initialState(from), true);
+    }
+
+    /**
+     * 当初の条件で計算したn回目の計算開始時点の状態
+     */
+    private State initialState(final int n) {
+        final State s = new State();
+        s.balance = (n == 0) ? loanInfo.amount : columns.getBalance(n - 1);
+        s.currentRate = loanInfo.annualRate;
+        s.accruedInterestBalance = 0;
+        s.rateChange = false;
+        s.monthlyPayment = initialMonthlyPayment;
+        s.lastRateChange = 0;
+        return s;
+    }
+
+    /**
+     * n回目以降を再計算
+     */
+    private void recalculateFrom(final int n) {
+        final int k = Math.min(n, checkpointLimit) / checkpointInterval;
+        if (k == 0)
+            calculate(0);
+        else
+            calculate(k * checkpointInterval, checkpoints[k], true);
     }
 
     /**
@@ -117,31 +409,140 @@ public class ConstantPaymentStandard extends AbstractPaymentTable {
      * @param start この回から最終回まで再計算する
      */
     protected void calculate(final int start) {
-        long accruedInterestBalance = 0;
-        boolean updateMonthlyPayment = false;
-        long balance, monthlyPayment;
-        double currentRate;
-        boolean rateChange;
-        int lastRateChange = start;
+        calculate(start, startState(start), start == 0);
+    }
 
+    /**
+     * start回目の計算開始時点の状態を作成<br>
+     * start-1回目までの償還表から求める
+     */
+    private State startState(final int start) {
+        final State s = new State();
         if (start == 0) {
-            balance = loanInfo.amount;
-            currentRate = loanInfo.annualRate;
-            accruedInterestBalance = 0;
-            rateChange = false;
-            monthlyPayment = initialMonthlyPayment;
+            s.balance = loanInfo.amount;
+            s.currentRate = loanInfo.annualRate;
+            s.accruedInterestBalance = 0;
+            s.rateChange = false;
+            s.monthlyPayment = initialMonthlyPayment;
+            s.lastRateChange = 0;
         }
         else {
-            PaymentRecord r = table[start - 1];
-            balance = r.getBalance();
-            currentRate = r.getRate();
-            accruedInterestBalance = r.getAccruedInterestBalance();
-            rateChange = true;
-            monthlyPayment = r.getPrincipal() + r.getInterest() + r.getAccruedInterestPaid();
+            PaymentRecord r = new PaymentRecord(columns, start - 1);
+            s.balance = r.getBalance();
+            s.currentRate = r.getRate();
+            s.accruedInterestBalance = r.getAccruedInterestBalance();
+            s.rateChange = true;
+            s.monthlyPayment = r.getPrincipal() + r.getInterest() + r.getAccruedInterestPaid();
+            s.lastRateChange = start;
+        }
+        return s;
+    }
+
+    /**
+     * 指定した計算状態からstart回目以降を再計算<br>
+     * 通知先が設定されていれば計測結果を通知する
+     *
+     * @param start この回から最終回まで再計算する
+     * @param initial start回目の計算開始時点の状態
+     * @param firstPass 初回からの計算、または記録済みのチェックポイントからの計算であればtrue
+     */
+    private void calculate(final int start, final State initial, final boolean firstPass) {
+        final CalculationListener l = listener;
+        if (l == null) {
+            calculate(start, initial, firstPass, null);
+            return;
         }
+        final Measurement m = new Measurement();
+        final long begin = System.nanoTime();
+        calculate(start, initial, firstPass, m);
+        l.recalculated(loanInfo, start, m.rows, m.depth, m.capHits, System.nanoTime() - begin);
+    }
+
+    /**
+     * 指定した計算状態からstart回目以降を再計算<br>
+     * 最終回に元金が残る場合は、最後の見直し時点の次の見直し時点から支払月額を増やして計算し直す。
+     * 計算し直すたびに開始回は5年以上後になるため、計算の段数は見直し時点の数を超えない。
+     * 段数がmaxPassesに達した場合は元金が残ったまま終了する。
+     *
+     * @param start この回から最終回まで再計算する
+     * @param initial start回目の計算開始時点の状態
+     * @param firstPass 初回からの計算、または記録済みのチェックポイントからの計算であればtrue
+     * @param m 計測結果の格納先。計測しない場合はnull
+     */
+    private void calculate(final int start, final State initial, final boolean firstPass, final Measurement m) {
+        int passStart = start;
+        State state = initial;
+        boolean recordPoints = firstPass;
+        for (int pass = 1; ; pass++) {
+            final int lastRateChange = calculatePass(passStart, state, recordPoints, m);
+
+            // 最終回の残債処理
+            final PaymentRecord last = new PaymentRecord(columns, loanInfo.installments - 1);
+            if (last.getBalance() > 0) {
+                // 最終回に元金が残っている場合
+                if (last.getBalance() < loanInfo.installments) {
+                    // 残債が少額の場合は最終回の支払元金に加えて残債を0にする
+                    last.setPrincipal(last.getPrincipal() + last.getBalance());
+                    last.setTotal(last.getTotal() + last.getBalance());
+                    last.setBalance(0);
+                }
+                else if (lastRateChange + RATE_CHANGE_INTERVAL < loanInfo.installments && pass < maxPasses) {
+                    // 遡って支払月額を増やすことが可能なら、支払月額を増やして途中から再計算する
+                    passStart = lastRateChange + RATE_CHANGE_INTERVAL;
+                    if (m != null)
+                        m.discardFrom(passStart);
+                    if (recordPoints)
+                        checkpointLimit = passStart;
+                    state = startState(passStart);
+                    recordPoints = false;
+                    continue;
+                }
+            }
+            converged = (last.getBalance() == 0);
+            return;
+        }
+    }
+
+    /**
+     * 指定した計算状態からstart回目以降を1回計算<br>
+     * 初回から、または記録済みのチェックポイントからの計算では各チェックポイントの状態を記録する
+     *
+     * @param start この回から最終回まで計算する
+     * @param initial start回目の計算開始時点の状態
+     * @param recordPoints 計算状態を記録する場合はtrue
+     * @param m 計測結果の格納先。計測しない場合はnull
+     * @return 最後に支払月額を見直した返済回
+     */
+    private int calculatePass(final int start, final State initial, final boolean recordPoints, final Measurement m) {
+        if (m != null) {
+            m.depth++;
+            m.rows += loanInfo.installments - start;
+        }
+        long accruedInterestBalance = initial.accruedInterestBalance;
+        boolean updateMonthlyPayment = initial.updateMonthlyPayment;
+        long balance = initial.balance;
+        long monthlyPayment = initial.monthlyPayment;
+        double currentRate = initial.currentRate;
+        boolean rateChange = initial.rateChange;
+        int lastRateChange = initial.lastRateChange;
+
+        final PaymentRecord r = new PaymentRecord(columns, start);
+        for (int i = start; i < loanInfo.installments; i++) {
+            r.moveTo(i);
+
+            // 計算状態を記録
+            if (recordPoints && i % checkpointInterval == 0) {
+                final State point = new State();
+                point.balance = balance;
+                point.currentRate = currentRate;
+                point.accruedInterestBalance = accruedInterestBalance;
+                point.monthlyPayment = monthlyPayment;
+                point.rateChange = rateChange;
+                point.updateMonthlyPayment = updateMonthlyPayment;
+                point.lastRateChange = lastRateChange;
+                checkpoints[i / checkpointInterval] = point;
+            }
 
-        for (int i = start; i < table.length; i++) {
-            PaymentRecord r = table[i];
             r.reset();
             r.setBalance(balance);
 
@@ -153,8 +554,11 @@ public class ConstantPaymentStandard extends AbstractPaymentTable {
             if ((rateChange || accruedInterestBalance > 0) && i >= RATE_CHANGE_INTERVAL && i % RATE_CHANGE_INTERVAL == 0) {
                 long previousMonthly = monthlyPayment;
                 monthlyPayment = getMonthlyPayment(r.getIndex(), r.getRate(), balance);
-                if (Math.round((double)previousMonthly * 1.25D) < monthlyPayment)
+                if (Math.round((double)previousMonthly * 1.25D) < monthlyPayment) {
                     monthlyPayment = Math.round((double)previousMonthly * 1.25D);
+                    if (m != null)
+                        m.capped(i);
+                }
                 if (Math.abs(previousMonthly - monthlyPayment) * (loanInfo.installments - r.getIndex()) < loanInfo.installments)
                     // 前回の月額と新しい月額の差がわずかな場合は前回の月額を引き続き使用
                     monthlyPayment = previousMonthly;
@@ -170,6 +574,13 @@ public class ConstantPaymentStandard extends AbstractPaymentTable {
                 updateMonthlyPayment = false;
             }
 
+            // 予定による繰上返済
+            final LoanEvent planned = plannedPrepayment(i, balance);
+            if (planned != null) {
+                r.setPrepayment(planned.amount);
+                lastPrepayment = Math.max(lastPrepayment, i);
+            }
+
             // 繰上返済
             if (r.getPrepayment() > 0) {
                 prepayment(r, accruedInterestBalance);
@@ -195,21 +606,9 @@ public class ConstantPaymentStandard extends AbstractPaymentTable {
             accruedInterestBalance = r.getAccruedInterestBalance();
         }
 
-        // 最終回の残債処理
-        PaymentRecord last = table[table.length - 1];
-        if (last.getBalance() > 0) {
-            // 最終回に元金が残っている場合
-            if (last.getBalance() < loanInfo.installments) {
-                // 残債が少額の場合は最終回の支払元金に加えて残債を0にする
-                last.setPrincipal(last.getPrincipal() + last.getBalance());
-                last.setTotal(last.getTotal() + last.getBalance());
-                last.setBalance(0);
-            }
-            else if (lastRateChange + RATE_CHANGE_INTERVAL < loanInfo.installments) {
-                // 遡って支払月額を増やすことが可能なら、支払月額を増やして途中から再計算する
-                calculate(lastRateChange + RATE_CHANGE_INTERVAL);
-            }
-        }
+        if (recordPoints)
+            checkpointLimit = loanInfo.installments;
+        return lastRateChange;
     }
 
     /**
@@ -246,7 +645,8 @@ public class ConstantPaymentStandard extends AbstractPaymentTable {
                 r.setBalance(0);
                 // 繰上返済額は使った分だけに再設定
                 r.setPrepayment(used + balance);
-                r.setPrincipal(r.getPrepayment());
+                // 未払い利息に充当した分は元金に含めない
+                r.setPrincipal(balance);
             }
             else {
                 // 残元金のほうが多い場合は元金を減額
@@ -309,4 +709,54 @@ public class ConstantPaymentStandard extends AbstractPaymentTable {
         long total = r.getInterest() + r.getPrincipal() + r.getAccruedInterestPaid();
         r.setTotal(total);
     }
+
+    /**
+     * 再計算の途中状態
+     */
+    private static final class State {
+        long    balance;
+        double  currentRate;
+        long    accruedInterestBalance;
+        long    monthlyPayment;
+        boolean rateChange;
+        boolean updateMonthlyPayment;
+        int     lastRateChange;
+
+    }
+
+    /**
+     * 1回の再計算の計測結果
+     */
+    private static final class Measurement {
+        int rows;
+        int depth;
+
+        /**
+         * 計算し直した段の分も含めて、125%ルールにより支払月額を制限した回数
+         */
+        int capHits;
+
+        /**
+         * 計算後の償還表で支払月額を制限している返済回。返済回の順に並ぶ
+         */
+        int cappedRows[] = new int[4];
+        int capped;
+
+        void capped(final int n) {
+            capHits++;
+            if (capped == cappedRows.length)
+                cappedRows = Arrays.copyOf(cappedRows, capped * 2);
+            cappedRows[capped++] = n;
+        }
+
+        /**
+         * 計算し直す範囲で記録した制限を取り消す
+         *
+         * @param n この回以降を計算し直す
+         */
+        void discardFrom(final int n) {
+            while (capped > 0 && cappedRows[capped - 1] >= n)
+                capped--;
+        }
+    }
 }
@@ -0,0 +1,68 @@
+package nx.domain.loan.payment;
+
+import java.util.Arrays;
+
+/**
+ * シナリオごとの値の分布
+ */
+public class Distribution {
+    /**
+     * シナリオの順の値
+     */
+    private final long values[];
+
+    /**
+     * 昇順に並べた値
+     */
+    private final long sorted[];
+
+    /**
+     * @param values シナリオの順の値。1個以上。このオブジェクトが保持するため、以後変更しないこと
+     */
+    Distribution(final long values[]) {
+        if (values.length == 0)
+            throw new IllegalArgumentException("values cannot be empty");
+        this.values = values;
+        this.sorted = values.clone();
+        Arrays.sort(sorted);
+    }
+
+    /**
+     * @return シナリオの数
+     */
+    public int size() { return values.length; }
+
+    /**
+     * @param path シナリオの番号
+     * @return そのシナリオの値
+     */
+    public long get(final int path) { return values[path]; }
+
+    public long getMin() { return sorted[0]; }
+
+    public long getMax() { return sorted[sorted.length - 1]; }
+
+    /**
+     * @return 平均値
+     */
+    public double getMean() {
+        double sum = 0D;
+        for (long v : values)
+            sum += v;
+        return sum / values.length;
+    }
+
+    /**
+     * パーセンタイルを取得<br>
+     * 昇順に並べた値のうち、p以上の割合の値がそれ以下になる最小の値を返す
+     *
+     * @param p 0以上1以下の割合。0.5で中央値、0.99で99パーセンタイル
+     * @return パーセンタイル
+     */
+    public long getPercentile(final double p) {
+        if (!(p >= 0D && p <= 1D))
+            throw new IllegalArgumentException("bad argument p: " + p);
+        final int k = (int)Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(k, 0)];
+    }
+}
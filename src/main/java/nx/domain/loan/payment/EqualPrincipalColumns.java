@@ -0,0 +1,183 @@
+package nx.domain.loan.payment;
+
+import nx.domain.loan.model.LoanInfo;
+import nx.domain.loan.model.LoanResult;
+import nx.domain.loan.model.PaymentColumns;
+
+/**
+ * 条件変更のない元金均等方式の償還表を、配列を持たずに返済回から直接計算する読み取り専用の配列<br>
+ * 毎回の元金は一定で、n回目の支払い前の元金残高は借入額から元金のn回分を引いた額になる。
+ * 最終回だけは残元金が0になるように元金を調整する。値はScheduleGeneratorで生成した償還表と一致する。
+ * 各回の値の取得と元金の集計は返済回数によらず一定の時間で済むが、利息は回ごとに1円未満を四捨五入するため、
+ * 等差数列の和では償還表の合計と一致しない。利息の集計は集計する回数に比例する時間がかかる
+ */
+final class EqualPrincipalColumns extends PaymentColumns {
+    private final LoanInfo loanInfo;
+
+    /**
+     * 毎回の元金
+     */
+    private final long principal;
+
+    /**
+     * 最終回の元金
+     */
+    private final long lastPrincipal;
+
+    /**
+     * @param loanInfo 借り入れの初期条件
+     */
+    EqualPrincipalColumns(final LoanInfo loanInfo) {
+        super(checked(loanInfo).installments, false);
+        this.loanInfo = loanInfo;
+        this.principal = Math.round((double)loanInfo.amount / (double)loanInfo.installments);
+        this.lastPrincipal = loanInfo.amount - principal * (loanInfo.installments - 1);
+    }
+
+    private static LoanInfo checked(final LoanInfo loanInfo) {
+        if (loanInfo == null)
+            throw new IllegalArgumentException("loanInfo cannot be null");
+        return loanInfo;
+    }
+
+    private void check(final int n) {
+        if (n < 0 || n >= size())
+            throw new IndexOutOfBoundsException();
+    }
+
+    /**
+     * n回目の支払い前の元金残高
+     */
+    private long balanceBefore(final int n) {
+        return loanInfo.amount - principal * n;
+    }
+
+    @Override
+    public double getRate(final int n) {
+        check(n);
+        return loanInfo.annualRate;
+    }
+
+    @Override
+    public long getPrincipal(final int n) {
+        check(n);
+        return (n == size() - 1) ? lastPrincipal : principal;
+    }
+
+    @Override
+    public long getInterest(final int n) {
+        check(n);
+        return Math.round((double)balanceBefore(n) * loanInfo.annualRate / 12.0D);
+    }
+
+    @Override
+    public long getTotal(final int n) { return getPrincipal(n) + getInterest(n); }
+
+    @Override
+    public long getBalance(final int n) {
+        check(n);
+        return (n == size() - 1) ? 0 : balanceBefore(n + 1);
+    }
+
+    @Override
+    public long getPrepayment(final int n) {
+        check(n);
+        return 0;
+    }
+
+    @Override
+    public long getAccruedInterestNew(final int n) {
+        check(n);
+        return 0;
+    }
+
+    @Override
+    public long getAccruedInterestPaid(final int n) {
+        check(n);
+        return 0;
+    }
+
+    @Override
+    public long getAccruedInterestBalance(final int n) {
+        check(n);
+        return 0;
+    }
+
+    @Override
+    public double[] getRates() {
+        final double values[] = new double[size()];
+        for (int n = 0; n < values.length; n++)
+            values[n] = loanInfo.annualRate;
+        return values;
+    }
+
+    @Override
+    public long[] getPrincipals() {
+        final long values[] = new long[size()];
+        for (int n = 0; n < values.length; n++)
+            values[n] = getPrincipal(n);
+        return values;
+    }
+
+    @Override
+    public long[] getInterests() {
+        final long values[] = new long[size()];
+        for (int n = 0; n < values.length; n++)
+            values[n] = getInterest(n);
+        return values;
+    }
+
+    @Override
+    public long[] getTotals() {
+        final long values[] = new long[size()];
+        for (int n = 0; n < values.length; n++)
+            values[n] = getTotal(n);
+        return values;
+    }
+
+    @Override
+    public long[] getBalances() {
+        final long values[] = new long[size()];
+        for (int n = 0; n < values.length; n++)
+            values[n] = getBalance(n);
+        return values;
+    }
+
+    @Override
+    public long[] getPrepayments() {
+        return new long[size()];
+    }
+
+    /**
+     * from回目からto回目の前までを集計<br>
+     * 元金は回数から直接求める。利息は丸める前の額であれば等差数列になるが、
+     * 回ごとの四捨五入による差は回ごとに異なり、まとめて求められないため、オブジェクトを作らずに各回の利息を足す
+     *
+     * @param from この回から集計
+     * @param to この回の前まで集計
+     * @return LoanResultオブジェクト。元金残高はto-1回目の支払い後の額
+     */
+    LoanResult getResult(final int from, final int to) {
+        final LoanResult result = new LoanResult();
+        if (from < to) {
+            result.addPrincipal(principal * (to - from) + ((to == size()) ? lastPrincipal - principal : 0));
+            final double rate = loanInfo.annualRate;
+            long interest = 0;
+            for (int n = from; n < to; n++)
+                interest += Math.round((double)balanceBefore(n) * rate / 12.0D);
+            result.addInterest(interest);
+        }
+        result.setBalance((to == 0) ? loanInfo.amount : getBalance(to - 1));
+        return result;
+    }
+
+    /**
+     * ヒープ上の変更可能な配列に当初の条件の償還表を生成
+     */
+    @Override
+    public PaymentColumns fork() {
+        final PaymentColumns columns = new PaymentColumns(size());
+        new ScheduleGenerator(loanInfo).generate(columns);
+        return columns;
+    }
+}
@@ -1,9 +1,15 @@
 package nx.domain.loan.payment;
 
+import java.util.Collections;
+import java.util.List;
+
+import nx.domain.loan.model.LoanEvent;
 import nx.domain.loan.model.LoanInfo;
 import nx.domain.loan.model.LoanInfo.PaymentType;
 import nx.domain.loan.model.LoanInfo.PrepaymentType;
 import nx.domain.loan.model.LoanInfo.RateType;
+import nx.domain.loan.model.LoanResult;
+import nx.domain.loan.model.PaymentColumns;
 import nx.domain.loan.model.PaymentRecord;
 
 /**
@@ -12,56 +18,113 @@ import nx.domain.loan.model.PaymentRecord;
  * 英語の別名はConstant Amortization Mortgage (CAM) Loan
  */
 public class EqualPrincipalPayment extends AbstractPaymentTable {
-    private final long initialPrincipal;
-
     public EqualPrincipalPayment(final LoanInfo loanInfo) {
-        super(loanInfo);
+        this(loanInfo, false);
+    }
+
+    /**
+     * @param loanInfo 借り入れの初期条件
+     * @param lazy 参照された返済回までしか計算しない場合はtrue。
+     *             繰り上げ返済や利率変更は既存の返済回から計算するため、その時点で全返済回を計算する
+     * @see AbstractPaymentTable#isLazy()
+     */
+    public EqualPrincipalPayment(final LoanInfo loanInfo, final boolean lazy) {
+        super(loanInfo, lazy);
         if (loanInfo.paymentType != PaymentType.EQUAL_PRINCIPAL_PAYMENT)
             throw new IllegalArgumentException("bad payment type");
-        initialPrincipal = Math.round((double)loanInfo.amount / (double)loanInfo.installments);
-        initialize();
+        if (!lazy)
+            initialize();
     }
 
     /**
-     * 償還表を初期化
+     * 保存した償還表を復元<br>
+     * 償還表は計算し直さない
+     *
+     * @param loanInfo 借り入れの初期条件
+     * @param columns 計算済みの償還表
+     * @param history 償還表の内容になるまでに処理した繰り上げ返済と利率変更
      */
-    public void initialize() {
-        for (int i = 0; i < loanInfo.installments; i++) {
-            table[i] = createRecord(i);
-        }
-        // 最終回の残元金が0でない場合は0になるように調整
-        PaymentRecord r = table[loanInfo.installments - 1];
-        if (r.getBalance() != 0) {
-            r.setPrincipal(r.getPrincipal() + r.getBalance());
-            r.setTotal(r.getTotal() + r.getBalance());
-            r.setBalance(0);
-        }
+    public EqualPrincipalPayment(final LoanInfo loanInfo, final PaymentColumns columns, final List<LoanEvent> history) {
+        super(loanInfo, columns, history);
+        if (loanInfo.paymentType != PaymentType.EQUAL_PRINCIPAL_PAYMENT)
+            throw new IllegalArgumentException("bad payment type");
     }
 
     /**
-     * n回目の返済情報を作成
+     * 複製を作成
      *
-     * @param n 返済回。初回は0
-     * @return PaymentRecord 返済情報
-     */
-    private PaymentRecord createRecord(final int n) {
-        PaymentRecord r = new PaymentRecord();
-        r.setIndex(n);
-        r.setRate(loanInfo.annualRate);
-        r.setPrincipal(initialPrincipal);
-        long balance, interest;
-        if (n == 0) {
-            balance = loanInfo.amount - initialPrincipal;
-            interest = Math.round((double)loanInfo.amount * loanInfo.annualRate / 12.0D);
-        }
-        else {
-            balance = table[n - 1].getBalance() - initialPrincipal;
-            interest = Math.round((double)(table[n - 1].getBalance()) * loanInfo.annualRate / 12.0D);
-        }
-        r.setBalance(balance);
-        r.setInterest(interest);
-        r.setTotal(initialPrincipal + interest);
-        return r;
+     * @param parent 複製元の償還表
+     */
+    protected EqualPrincipalPayment(final EqualPrincipalPayment parent) {
+        super(parent);
+    }
+
+    /**
+     * 返済回を配列に格納しない償還表を作成<br>
+     * 条件変更がなければ各回の値は返済回から直接求まるため、get()は返済回数によらず一定の時間で済み、
+     * 集計も返済回ごとのオブジェクトを作らずに行う。ただし利息の集計は回ごとに丸めるため、集計する回数に比例する時間がかかる。
+     * 最初の繰り上げ返済または利率変更で全返済回を配列に生成し、以後は通常の償還表と同じになる
+     *
+     * @param loanInfo 借り入れの初期条件
+     * @return 償還表
+     * @see #isVirtual()
+     */
+    public static EqualPrincipalPayment createVirtual(final LoanInfo loanInfo) {
+        return new EqualPrincipalPayment(loanInfo, new EqualPrincipalColumns(loanInfo), Collections.<LoanEvent>emptyList());
+    }
+
+    /**
+     * @return 返済回を配列に格納していなければtrue
+     * @see #createVirtual(LoanInfo)
+     */
+    public boolean isVirtual() {
+        return columns instanceof EqualPrincipalColumns;
+    }
+
+    /**
+     * 返済回を配列に格納しない償還表は、値が変わらないため配列を共有する
+     */
+    @Override
+    public EqualPrincipalPayment fork() {
+        if (isVirtual())
+            return new EqualPrincipalPayment(loanInfo, columns, getHistory());
+        return new EqualPrincipalPayment(this);
+    }
+
+    /**
+     * 返済回を配列に格納しない償還表は変更できるため、配列が読み取り専用でもfalseを返す
+     */
+    @Override
+    public boolean isReadOnly() {
+        return !isVirtual() && super.isReadOnly();
+    }
+
+    /**
+     * 償還表を初期化<br>
+     * 返済回を配列に格納しない償還表では、変更可能な配列に全返済回を生成する
+     */
+    public void initialize() {
+        if (isVirtual())
+            columns = columns.fork();
+        else
+            new ScheduleGenerator(loanInfo).generate(columns);
+    }
+
+    /**
+     * 条件変更の前に、返済回を配列に格納しない償還表を通常の償還表にする
+     */
+    private void materialize() {
+        if (isVirtual())
+            initialize();
+    }
+
+    @Override
+    public LoanResult getResult(final int from, final int to) {
+        if (!isVirtual())
+            return super.getResult(from, to);
+        if (from < 0 || to > loanInfo.installments || from > to)
+            throw new IndexOutOfBoundsException();
+        return ((EqualPrincipalColumns)columns).getResult(from, to);
     }
 
     public void prepayment(final int n, long amount) {
@@ -70,16 +133,21 @@ public class EqualPrincipalPayment extends AbstractPaymentTable {
         if (amount < 0)
             throw new IllegalArgumentException("bad amount: " + amount);
 
+        if (amount > 0)
+            addHistory(LoanEvent.prepayment(n, amount));
+        calculateAll();
+        materialize();
+
         /*
          * n回目の再計算
          */
-        PaymentRecord r = table[n];
+        final PaymentRecord r = new PaymentRecord(columns, n);
         if (amount > r.getBalance())
             amount = r.getBalance();
         r.setPrepayment(amount);
         long total = r.getPrincipal() + r.getInterest() + amount;
         r.setTotal(total);
-        long balance = (n == 0) ? loanInfo.amount : table[n - 1].getBalance();
+        long balance = (n == 0) ? loanInfo.amount : columns.getBalance(n - 1);
         r.setBalance(balance - r.getPrincipal() - amount);
 
         if (n == loanInfo.installments - 1)
@@ -102,9 +170,10 @@ public class EqualPrincipalPayment extends AbstractPaymentTable {
      */
     private void prepaymentReducePrincipal(final int n) {
         long newPrincipal = 0;
+        final PaymentRecord prev = new PaymentRecord(columns, n), r = new PaymentRecord(columns, n);
         for (int i = n + 1; i < loanInfo.installments; i++) {
-            PaymentRecord prev = table[i - 1];
-            PaymentRecord r = table[i];
+            prev.moveTo(i - 1);
+            r.moveTo(i);
             if (prev.getPrepayment() > 0)
                 newPrincipal = Math.round((double)(prev.getBalance()) / (loanInfo.installments - i));
             if (newPrincipal > prev.getBalance())
@@ -124,9 +193,10 @@ public class EqualPrincipalPayment extends AbstractPaymentTable {
      * @param n 繰り上げ返済を実施した返済回
      */
     private void prepaymentShortenDuration(final int n) {
+        final PaymentRecord prev = new PaymentRecord(columns, n), r = new PaymentRecord(columns, n);
         for (int i = n + 1; i < loanInfo.installments; i++) {
-            PaymentRecord prev = table[i - 1];
-            PaymentRecord r = table[i];
+            prev.moveTo(i - 1);
+            r.moveTo(i);
             if (prev.getBalance() < r.getPrincipal())
                 r.setPrincipal(prev.getBalance());
             long interest = Math.round((double)(prev.getBalance()) * r.getRate() / 12.0D);
@@ -141,13 +211,157 @@ public class EqualPrincipalPayment extends AbstractPaymentTable {
         if (loanInfo.rateType == RateType.FIXED)
             throw new IllegalArgumentException("Rate is fixed.");
 
+        calculateAll();
+        materialize();
+        final PaymentRecord r = new PaymentRecord(columns, 0);
         for (int i = n; i < loanInfo.installments; i++) {
-            PaymentRecord r = table[i];
-            long balance = (i == 0) ? loanInfo.amount : table[i - 1].getBalance();
+            r.moveTo(i);
+            long balance = (i == 0) ? loanInfo.amount : columns.getBalance(i - 1);
             r.setRate(newRate);
             long interest = Math.round((double)balance * newRate / 12.0D);
             r.setInterest(interest);
             r.setTotal(r.getPrincipal() + interest + r.getPrepayment());
         }
+        // 償還表に反映されない変更は記録しない
+        if (n < loanInfo.installments && newRate >= 0D)
+            addHistory(LoanEvent.changeRate(n, newRate));
+    }
+
+    /**
+     * 条件変更をまとめて処理<br>
+     * 最初の変更回から最終回まで、各回の直前の変更に応じた方法で1回だけ再計算する。
+     * 返済期間短縮型でprepayment()を続けて呼び出すと、1回目の繰り上げ返済で残元金に合わせて減らした以後の回の元金は、
+     * 2回目で残元金が増えても戻らない。ここでは同じ回の繰り上げ返済をすべて処理してから以後の回を計算するため、
+     * 同じ回に複数の繰り上げ返済がある場合は1つずつ処理した場合と一致しないことがある
+     *
+     * @param events 返済回の順に並んだ条件変更
+     */
+    @Override
+    protected void applyEvents(final List<LoanEvent> events) {
+        recalculateEvents(events, events.get(0).index);
+    }
+
+    /**
+     * 予定した繰り上げ返済の額を再計算の中で決めながら、start回目以降を1回だけ再計算
+     *
+     * @param start 最初に繰り上げ返済を予定している返済回
+     */
+    @Override
+    protected void applyPlan(final int start) {
+        recalculateEvents(Collections.<LoanEvent>emptyList(), start);
+    }
+
+    /**
+     * start回目から最終回まで、各回の直前の変更に応じた方法で1回だけ再計算<br>
+     * 各回では条件変更を処理した後に、予定による繰り上げ返済を処理する
+     *
+     * @param events 返済回の順に並んだ条件変更
+     * @param start この回から再計算する。最初の条件変更の回以前
+     */
+    private void recalculateEvents(final List<LoanEvent> events, final int start) {
+        calculateAll();
+        materialize();
+        // 元金と残元金の再計算方法
+        Mode principalMode = Mode.NONE;
+        // 利息の再計算方法。利率変更と返済額軽減型では利息の丸め方が異なる
+        Mode interestMode = Mode.NONE;
+        boolean rateChanged = false;
+        double rate = 0D;
+        long newPrincipal = 0;
+        int next = 0;
+        final PaymentRecord r = new PaymentRecord(columns, start);
+        for (int i = start; i < loanInfo.installments; i++) {
+            r.moveTo(i);
+            final long balance = (i == 0) ? loanInfo.amount : columns.getBalance(i - 1);
+            if (rateChanged)
+                r.setRate(rate);
+
+            // 前回までの変更に従って今回を再計算
+            if (principalMode == Mode.REDUCE_PRINCIPAL) {
+                if (columns.getPrepayment(i - 1) > 0)
+                    newPrincipal = Math.round((double)balance / (loanInfo.installments - i));
+                r.setPrincipal(newPrincipal > balance ? balance : newPrincipal);
+            }
+            else if (principalMode == Mode.SHORTEN_DURATION) {
+                if (balance < r.getPrincipal())
+                    r.setPrincipal(balance);
+            }
+            if (interestMode != Mode.NONE)
+                recalculateRecord(r, balance, interestMode, principalMode != Mode.NONE);
+
+            // 今回の変更
+            while (true) {
+                LoanEvent e;
+                if (next < events.size() && events.get(next).index == i)
+                    e = events.get(next++);
+                else if ((e = plannedPrepayment(i, balance)) == null)
+                    break;
+                if (e.type == LoanEvent.Type.RATE_CHANGE) {
+                    rate = e.rate;
+                    rateChanged = true;
+                    r.setRate(rate);
+                    interestMode = Mode.RATE_CHANGE;
+                    recalculateRecord(r, balance, interestMode, false);
+                }
+                else {
+                    long amount = e.amount;
+                    if (amount > r.getBalance())
+                        amount = r.getBalance();
+                    r.setPrepayment(amount);
+                    r.setTotal(r.getPrincipal() + r.getInterest() + amount);
+                    r.setBalance(balance - r.getPrincipal() - amount);
+                    if (loanInfo.prepaymentType == PrepaymentType.AMOUNT) {
+                        newPrincipal = 0;
+                        principalMode = Mode.REDUCE_PRINCIPAL;
+                    }
+                    else {
+                        principalMode = Mode.SHORTEN_DURATION;
+                    }
+                    interestMode = principalMode;
+                }
+            }
+        }
+    }
+
+    /**
+     * 今回の利息と支払額合計を再計算
+     *
+     * @param r 処理対象月の支払情報
+     * @param balance 前回の元金残額
+     * @param mode 利息の計算方法
+     * @param updateBalance 残元金も再計算する場合はtrue
+     */
+    private void recalculateRecord(final PaymentRecord r, final long balance, final Mode mode, final boolean updateBalance) {
+        final long interest;
+        if (mode == Mode.REDUCE_PRINCIPAL)
+            interest = Math.round((double)balance * (r.getRate() / 12.0D));
+        else
+            interest = Math.round((double)balance * r.getRate() / 12.0D);
+        r.setInterest(interest);
+        r.setTotal(r.getPrincipal() + interest + r.getPrepayment());
+        if (updateBalance)
+            r.setBalance(balance - r.getPrincipal() - r.getPrepayment());
+    }
+
+    /**
+     * 直前の条件変更による再計算の方法
+     */
+    private enum Mode {
+        /**
+         * 再計算しない
+         */
+        NONE,
+        /**
+         * changeRate()と同じ
+         */
+        RATE_CHANGE,
+        /**
+         * prepaymentReducePrincipal()と同じ
+         */
+        REDUCE_PRINCIPAL,
+        /**
+         * prepaymentShortenDuration()と同じ
+         */
+        SHORTEN_DURATION
     }
 }
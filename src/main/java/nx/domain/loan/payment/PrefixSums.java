@@ -0,0 +1,65 @@
+package nx.domain.loan.payment;
+
+import nx.domain.loan.model.PaymentColumns;
+
+/**
+ * 償還表の各項目の累計<br>
+ * 要素kは初回からk-1回目までの合計。償還表の変更後は、変更された最初の回以降の累計だけを計算し直す。
+ */
+final class PrefixSums {
+    private final long principal[];
+    private final long interest[];
+    private final long prepayment[];
+    private final long accruedInterestPaid[];
+
+    /**
+     * この要素までの累計は計算済み
+     */
+    private int validTo;
+
+    PrefixSums(final int size) {
+        principal           = new long[size + 1];
+        interest            = new long[size + 1];
+        prepayment          = new long[size + 1];
+        accruedInterestPaid = new long[size + 1];
+        validTo             = 0;
+    }
+
+    /**
+     * 償還表の変更を累計に反映
+     *
+     * @param columns 集計対象の償還表
+     */
+    void update(final PaymentColumns columns) {
+        update(columns, columns.size());
+    }
+
+    /**
+     * 償還表の変更をto回目の前までの累計に反映<br>
+     * to回目以降の累計は次に必要になるまで計算しない
+     *
+     * @param columns 集計対象の償還表
+     * @param to この回の前までの累計を計算する
+     */
+    void update(final PaymentColumns columns, final int to) {
+        final int from = Math.min(validTo, columns.getModifiedFrom());
+        if (from >= to)
+            return;
+        for (int k = from; k < to; k++) {
+            principal[k + 1]           = principal[k] + columns.getPrincipal(k);
+            interest[k + 1]            = interest[k] + columns.getInterest(k);
+            prepayment[k + 1]          = prepayment[k] + columns.getPrepayment(k);
+            accruedInterestPaid[k + 1] = accruedInterestPaid[k] + columns.getAccruedInterestPaid(k);
+        }
+        validTo = to;
+        columns.clearModified();
+    }
+
+    long principal(final int from, final int to) { return principal[to] - principal[from]; }
+
+    long interest(final int from, final int to) { return interest[to] - interest[from]; }
+
+    long prepayment(final int from, final int to) { return prepayment[to] - prepayment[from]; }
+
+    long accruedInterestPaid(final int from, final int to) { return accruedInterestPaid[to] - accruedInterestPaid[from]; }
+}
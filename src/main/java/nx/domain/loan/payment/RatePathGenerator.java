@@ -0,0 +1,18 @@
+package nx.domain.loan.payment;
+
+import java.util.SplittableRandom;
+
+/**
+ * RateScenarioEngineで評価する利率の推移を生成<br>
+ * 複数のスレッドから同時に呼び出されるため、スレッドセーフに実装すること
+ */
+public interface RatePathGenerator {
+    /**
+     * 1つのシナリオの返済回ごとの利率を生成
+     *
+     * @param path シナリオの番号。0から始まる
+     * @param random このシナリオ用の乱数。シナリオの番号と種だけで決まるため、スレッド数によらず同じ結果になる
+     * @param rates 返済回ごとの年利の格納先。大きさは返済回数で、すべての要素に0以上の値を設定すること
+     */
+    void generate(int path, SplittableRandom random, double rates[]);
+}
@@ -0,0 +1,151 @@
+package nx.domain.loan.payment;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import nx.domain.loan.model.LoanInfo;
+import nx.domain.loan.model.LoanInfo.PaymentType;
+import nx.domain.loan.model.LoanInfo.RateType;
+import nx.domain.loan.model.PaymentColumns;
+
+/**
+ * 変動金利の元利均等ローンを多数の利率シナリオで評価<br>
+ * シナリオごとに全返済回の利率を生成し、ConstantPaymentStandardで初回から1回だけ計算する。
+ * 利率変更を毎月呼び出す場合と異なり、1シナリオの計算は返済回数に比例する。
+ * シナリオはForkJoinPoolで分割して並列に処理し、分割した範囲ごとに作業用の償還表を1つだけ作成して使い回す。
+ */
+public class RateScenarioEngine {
+    private final ForkJoinPool pool;
+
+    /**
+     * 利用可能なプロセッサ数のスレッドで処理
+     */
+    public RateScenarioEngine() {
+        this(new ForkJoinPool());
+    }
+
+    /**
+     * @param pool 処理に使うForkJoinPool
+     */
+    public RateScenarioEngine(final ForkJoinPool pool) {
+        if (pool == null)
+            throw new IllegalArgumentException("pool cannot be null");
+        this.pool = pool;
+    }
+
+    /**
+     * シナリオを評価
+     *
+     * @param loanInfo 借り入れの初期条件。元利均等の変動金利であること
+     * @param generator 利率の推移の生成方法
+     * @param paths シナリオの数
+     * @param seed 乱数の種。同じ種であれば同じ結果になる
+     * @return シナリオごとの結果
+     */
+    public ScenarioResult run(final LoanInfo loanInfo, final RatePathGenerator generator, final int paths, final long seed) {
+        if (loanInfo == null)
+            throw new IllegalArgumentException("loanInfo cannot be null");
+        if (loanInfo.paymentType != PaymentType.CONSTANT_PAYMENT)
+            throw new IllegalArgumentException("bad payment type");
+        if (loanInfo.rateType == RateType.FIXED)
+            throw new IllegalArgumentException("Rate is fixed.");
+        if (generator == null)
+            throw new IllegalArgumentException("generator cannot be null");
+        if (paths <= 0)
+            throw new IllegalArgumentException("bad argument paths: " + paths);
+
+        final Task task = new Task(loanInfo, generator, seed, paths);
+        // スレッドごとに数回ずつ分担する程度に分割する
+        final int batch = Math.max(1, paths / (pool.getParallelism() * 4));
+        pool.invoke(task.range(0, paths, batch));
+        return new ScenarioResult(task.totalInterest, task.maxPayment, task.accruedInterestBalance, task.capHits);
+    }
+
+    /**
+     * 処理に使うスレッドを終了
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * 1回のrun()の入力と結果の格納先
+     */
+    private static final class Task {
+        final LoanInfo loanInfo;
+        final RatePathGenerator generator;
+        final long seed;
+        final long totalInterest[];
+        final long maxPayment[];
+        final long accruedInterestBalance[];
+        final long capHits[];
+
+        Task(final LoanInfo loanInfo, final RatePathGenerator generator, final long seed, final int paths) {
+            this.loanInfo = loanInfo;
+            this.generator = generator;
+            this.seed = seed;
+            this.totalInterest = new long[paths];
+            this.maxPayment = new long[paths];
+            this.accruedInterestBalance = new long[paths];
+            this.capHits = new long[paths];
+        }
+
+        Range range(final int from, final int to, final int batch) {
+            return new Range(this, from, to, batch);
+        }
+
+        /**
+         * [from, to)の範囲のシナリオを1つの作業用の償還表で評価
+         */
+        void evaluate(final int from, final int to) {
+            final ConstantPaymentStandard scratch = new ConstantPaymentStandard(loanInfo);
+            final double rates[] = new double[loanInfo.installments];
+            for (int path = from; path < to; path++) {
+                generator.generate(path, new SplittableRandom(seed + path), rates);
+                for (int i = 0; i < rates.length; i++) {
+                    if (!(rates[i] >= 0D))
+                        throw new IllegalArgumentException("bad rate: " + rates[i]);
+                }
+                capHits[path] = scratch.calculateScenario(rates);
+
+                final PaymentColumns columns = scratch.columns;
+                long interest = 0, max = 0;
+                for (int i = 0; i < rates.length; i++) {
+                    interest += columns.getInterest(i) + columns.getAccruedInterestPaid(i);
+                    max = Math.max(max, columns.getTotal(i));
+                }
+                totalInterest[path] = interest;
+                maxPayment[path] = max;
+                accruedInterestBalance[path] = columns.getAccruedInterestBalance(rates.length - 1);
+            }
+        }
+    }
+
+    private static final class Range extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Task task;
+        private final int from;
+        private final int to;
+        private final int batch;
+
+        Range(final Task task, final int from, final int to, final int batch) {
+            this.task  = task;
+            this.from  = from;
+            this.to    = to;
+            this.batch = batch;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= batch) {
+                task.evaluate(from, to);
+            }
+            else {
+                final int middle = (from + to) >>> 1;
+                invokeAll(new Range(task, from, middle, batch), new Range(task, middle, to, batch));
+            }
+        }
+    }
+}
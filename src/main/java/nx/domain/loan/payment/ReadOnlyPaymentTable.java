@@ -0,0 +1,250 @@
+package nx.domain.loan.payment;
+
+import java.util.List;
+import java.util.Spliterator;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+import nx.domain.loan.model.LoanEvent;
+import nx.domain.loan.model.LoanInfo;
+import nx.domain.loan.model.LoanResult;
+import nx.domain.loan.model.PaymentColumns;
+import nx.domain.loan.model.PaymentRecord;
+import nx.domain.loan.model.PrepaymentPlan;
+
+/**
+ * 読み取り専用の償還表<br>
+ * 作成元の償還表と同じ配列を参照し、以後その配列を変更できないようにする。
+ * 作成元の償還表を持たずに読み取り専用の配列を直接参照することもでき、その場合は集計用の累計を作成しない。
+ * 参照に使う値はすべてfinalのフィールドから辿り、作成時に確定した値だけを読むため、
+ * 同期せずに他のスレッドへ渡しても同時に参照できる。繰り上げ返済や利率変更はできない。
+ */
+final class ReadOnlyPaymentTable extends AbstractPaymentTable {
+    /**
+     * 作成元の償還表。fork()で複製を作成するために保持する。配列を直接参照する場合はnull
+     */
+    private final AbstractPaymentTable source;
+
+    /**
+     * 作成元の償還表のクラス
+     */
+    private final Class<? extends AbstractPaymentTable> engineType;
+
+    /**
+     * 作成元の償還表の配列。基底クラスのフィールドは遅延計算のために変更されうるため、参照にはこちらを使う
+     */
+    private final PaymentColumns values;
+
+    /**
+     * 集計用の累計。作成時に全返済回分を計算する。nullの場合は集計のたびに範囲内の値を合計する
+     */
+    private final PrefixSums prefixSums;
+
+    /**
+     * @param table 作成元の償還表。以後は作成元の償還表も変更できなくなる
+     */
+    ReadOnlyPaymentTable(final AbstractPaymentTable table) {
+        super(table.loanInfo, table.calculateAll().columns);
+        source = table;
+        engineType = table.getEngineType();
+        values = table.columns;
+        values.setReadOnly();
+        prefixSums = new PrefixSums(loanInfo.installments);
+        prefixSums.update(values);
+    }
+
+    /**
+     * 読み取り専用の配列を直接参照する償還表を作成<br>
+     * 計算状態や集計用の累計は作成しない
+     *
+     * @param engineType fork()で復元する償還表のクラス
+     * @param loanInfo 借り入れの初期条件
+     * @param columns 読み取り専用の償還表の配列
+     * @param history 配列の内容になるまでに処理した繰り上げ返済と利率変更
+     */
+    ReadOnlyPaymentTable(final Class<? extends AbstractPaymentTable> engineType, final LoanInfo loanInfo,
+            final PaymentColumns columns, final List<LoanEvent> history) {
+        super(loanInfo, columns, history);
+        source = null;
+        this.engineType = engineType;
+        values = columns;
+        prefixSums = null;
+    }
+
+    /**
+     * 変更可能な複製を作成<br>
+     * 複数のスレッドから同時に呼び出すことができる
+     *
+     * @return 作成元と同じ種類の償還表
+     */
+    @Override
+    public AbstractPaymentTable fork() {
+        if (source == null)
+            return restore(engineType, loanInfo, values.fork(), super.getHistory());
+        return source.fork();
+    }
+
+    @Override
+    public Class<? extends AbstractPaymentTable> getEngineType() {
+        return engineType;
+    }
+
+    @Override
+    public List<LoanEvent> getHistory() {
+        return (source == null) ? super.getHistory() : source.getHistory();
+    }
+
+    /**
+     * 値が変わらないため自分自身を返す
+     */
+    @Override
+    public AbstractPaymentTable freeze() {
+        return this;
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return true;
+    }
+
+    @Override
+    public PaymentRecord get(final int n) {
+        if (n < 0 || n >= loanInfo.installments)
+            throw new IndexOutOfBoundsException();
+        return new PaymentRecord(values, n);
+    }
+
+    @Override
+    public Spliterator<PaymentRecord> spliterator() {
+        return new TableSpliterator(this, 0, loanInfo.installments);
+    }
+
+    @Override
+    public LongStream principalStream() {
+        return IntStream.range(0, loanInfo.installments).mapToLong(values::getPrincipal);
+    }
+
+    @Override
+    public LongStream interestStream() {
+        return IntStream.range(0, loanInfo.installments).mapToLong(values::getInterest);
+    }
+
+    @Override
+    public LongStream totalStream() {
+        return IntStream.range(0, loanInfo.installments).mapToLong(values::getTotal);
+    }
+
+    @Override
+    public LongStream balanceStream() {
+        return IntStream.range(0, loanInfo.installments).mapToLong(values::getBalance);
+    }
+
+    @Override
+    public LongStream prepaymentStream() {
+        return IntStream.range(0, loanInfo.installments).mapToLong(values::getPrepayment);
+    }
+
+    @Override
+    public LongStream accruedInterestPaidStream() {
+        return IntStream.range(0, loanInfo.installments).mapToLong(values::getAccruedInterestPaid);
+    }
+
+    @Override
+    public LoanResult getResult(final int from, final int to) {
+        if (from < 0 || to > loanInfo.installments || from > to)
+            throw new IndexOutOfBoundsException();
+        LoanResult result = new LoanResult();
+        if (prefixSums != null) {
+            result.addPrincipal(prefixSums.principal(from, to));
+            result.addInterest(prefixSums.interest(from, to));
+            result.addPrepayment(prefixSums.prepayment(from, to));
+            result.addAccruedInterestPaid(prefixSums.accruedInterestPaid(from, to));
+        }
+        else {
+            long principal = 0, interest = 0, prepayment = 0, accruedInterestPaid = 0;
+            for (int k = from; k < to; k++) {
+                principal           += values.getPrincipal(k);
+                interest            += values.getInterest(k);
+                prepayment          += values.getPrepayment(k);
+                accruedInterestPaid += values.getAccruedInterestPaid(k);
+            }
+            result.addPrincipal(principal);
+            result.addInterest(interest);
+            result.addPrepayment(prepayment);
+            result.addAccruedInterestPaid(accruedInterestPaid);
+        }
+        if (to == 0) {
+            result.setBalance(loanInfo.amount);
+        }
+        else {
+            result.setBalance(values.getBalance(to - 1));
+            result.setAccruedInterestBalance(values.getAccruedInterestBalance(to - 1));
+        }
+        return result;
+    }
+
+    @Override
+    public double[] rates() {
+        return values.getRates();
+    }
+
+    @Override
+    public long[] principals() {
+        return values.getPrincipals();
+    }
+
+    @Override
+    public long[] interests() {
+        return values.getInterests();
+    }
+
+    @Override
+    public long[] totals() {
+        return values.getTotals();
+    }
+
+    @Override
+    public long[] balances() {
+        return values.getBalances();
+    }
+
+    @Override
+    public long[] prepayments() {
+        return values.getPrepayments();
+    }
+
+    @Override
+    public void prepayment(final int n, final long amount) {
+        throw new UnsupportedOperationException("read-only");
+    }
+
+    @Override
+    public void changeRate(final int n, final double newRate) {
+        throw new UnsupportedOperationException("read-only");
+    }
+
+    @Override
+    public void apply(final List<LoanEvent> events) {
+        throw new UnsupportedOperationException("read-only");
+    }
+
+    @Override
+    public void changeRates(final double rates[]) {
+        throw new UnsupportedOperationException("read-only");
+    }
+
+    @Override
+    public void apply(final PrepaymentPlan plan) {
+        throw new UnsupportedOperationException("read-only");
+    }
+
+    @Override
+    protected void applyEvents(final List<LoanEvent> events) {
+        throw new UnsupportedOperationException("read-only");
+    }
+
+    @Override
+    protected void applyPlan(final int start) {
+        throw new UnsupportedOperationException("read-only");
+    }
+}
@@ -0,0 +1,55 @@
+package nx.domain.loan.payment;
+
+/**
+ * RateScenarioEngineで評価したシナリオごとの結果
+ */
+public class ScenarioResult {
+    private final Distribution totalInterest;
+    private final Distribution maxPayment;
+    private final Distribution accruedInterestBalance;
+    private final Distribution capHits;
+
+    ScenarioResult(final long totalInterest[], final long maxPayment[], final long accruedInterestBalance[], final long capHits[]) {
+        this.totalInterest = new Distribution(totalInterest);
+        this.maxPayment = new Distribution(maxPayment);
+        this.accruedInterestBalance = new Distribution(accruedInterestBalance);
+        this.capHits = new Distribution(capHits);
+    }
+
+    /**
+     * @return シナリオの数
+     */
+    public int size() { return totalInterest.size(); }
+
+    /**
+     * @return 支払った利息の合計の分布。充当した未払い利息を含む
+     */
+    public Distribution getTotalInterest() { return totalInterest; }
+
+    /**
+     * @return 1回の支払額合計の最大値の分布
+     */
+    public Distribution getMaxPayment() { return maxPayment; }
+
+    /**
+     * @return 最終回の支払い後に残った未払い利息の分布
+     */
+    public Distribution getAccruedInterestBalance() { return accruedInterestBalance; }
+
+    /**
+     * @return 5年･125%ルールにより支払月額を制限した回数の分布
+     */
+    public Distribution getCapHits() { return capHits; }
+
+    /**
+     * @return 5年･125%ルールにより支払月額を1回以上制限したシナリオの割合
+     */
+    public double getCapBindingRatio() {
+        int count = 0;
+        for (int path = 0; path < capHits.size(); path++) {
+            if (capHits.get(path) > 0)
+                count++;
+        }
+        return (double)count / capHits.size();
+    }
+}
@@ -0,0 +1,111 @@
+package nx.domain.loan.payment;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import nx.domain.loan.model.LoanInfo;
+
+/**
+ * 借り入れの初期条件ごとに償還表をキャッシュ<br>
+ * 同じ条件の償還表を繰り返し作成する場合に利用する。上限を超えた場合は最も長く参照されていないものを削除する。
+ * 返す償還表は読み取り専用で、複数のスレッドが同じ償還表をコピーせずに参照できる。
+ */
+public class ScheduleCache {
+    private final int capacity;
+    private final LinkedHashMap<LoanInfo, AbstractPaymentTable> tables;
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    /**
+     * @param capacity キャッシュする償還表の最大数
+     */
+    public ScheduleCache(final int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("bad capacity: " + capacity);
+        this.capacity = capacity;
+        this.tables = new LinkedHashMap<LoanInfo, AbstractPaymentTable>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<LoanInfo, AbstractPaymentTable> eldest) {
+                if (size() > ScheduleCache.this.capacity) {
+                    evictionCount++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * 償還表を取得。キャッシュになければ作成する
+     *
+     * @param loanInfo 借り入れの初期条件
+     * @return 読み取り専用の償還表
+     */
+    public AbstractPaymentTable get(final LoanInfo loanInfo) {
+        if (loanInfo == null)
+            throw new IllegalArgumentException("loanInfo cannot be null");
+        synchronized (this) {
+            final AbstractPaymentTable table = tables.get(loanInfo);
+            if (table != null) {
+                hitCount++;
+                return table;
+            }
+            missCount++;
+        }
+
+        // 作成中は他のスレッドを待たせない
+        final AbstractPaymentTable created = new ReadOnlyPaymentTable(AbstractPaymentTable.create(loanInfo));
+        synchronized (this) {
+            final AbstractPaymentTable table = tables.get(loanInfo);
+            if (table != null)
+                return table;
+            tables.put(loanInfo, created);
+            return created;
+        }
+    }
+
+    /**
+     * @return キャッシュしている償還表の数
+     */
+    public synchronized int size() {
+        return tables.size();
+    }
+
+    /**
+     * @return キャッシュする償還表の最大数
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return キャッシュにあった回数
+     */
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * @return キャッシュになく償還表を作成した回数
+     */
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * @return 上限を超えたため削除した回数
+     */
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * キャッシュした償還表をすべて削除
+     */
+    public synchronized void clear() {
+        tables.clear();
+    }
+}
@@ -0,0 +1,138 @@
+package nx.domain.loan.payment;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import nx.domain.loan.model.LoanInfo;
+import nx.domain.loan.model.LoanInfo.PaymentType;
+import nx.domain.loan.model.LoanResult;
+import nx.domain.loan.model.PaymentColumns;
+import nx.domain.loan.model.PaymentRecord;
+
+/**
+ * 償還表を作らずに、ローン設定当初の返済情報を初回から順に生成<br>
+ * 集計結果だけが必要な場合や先頭の数回だけを参照する場合に利用する。
+ * next()は毎回同じPaymentRecordの内容を更新して返すため、返済回ごとのオブジェクト生成がない。
+ * 繰り上げ返済や利率変更が必要な場合は償還表を作成すること。
+ */
+public class ScheduleGenerator implements Iterator<PaymentRecord> {
+    private final LoanInfo loanInfo;
+
+    /**
+     * 元利均等では支払月額、元金均等では毎回の元金
+     */
+    private final long monthlyAmount;
+
+    private final PaymentRecord record = new PaymentRecord();
+    private final LoanResult result = new LoanResult();
+    private long balance;
+    private int position;
+
+    public ScheduleGenerator(final LoanInfo loanInfo) {
+        if (loanInfo == null)
+            throw new IllegalArgumentException("loanInfo cannot be null");
+        this.loanInfo = loanInfo;
+        if (loanInfo.paymentType == PaymentType.CONSTANT_PAYMENT)
+            monthlyAmount = ConstantPaymentStandard.calculateMonthlyPayment(loanInfo.annualRate, loanInfo.amount, loanInfo.installments);
+        else
+            monthlyAmount = Math.round((double)loanInfo.amount / (double)loanInfo.installments);
+        balance = loanInfo.amount;
+        record.setRate(loanInfo.annualRate);
+    }
+
+    /**
+     * 償還表を作らずに集計結果だけを計算
+     *
+     * @param loanInfo 借り入れの初期条件
+     * @return LoanResultオブジェクト
+     */
+    public static LoanResult summarize(final LoanInfo loanInfo) {
+        final ScheduleGenerator generator = new ScheduleGenerator(loanInfo);
+        while (generator.hasNext()) {
+            generator.next();
+        }
+        return generator.getResult();
+    }
+
+    @Override
+    public boolean hasNext() {
+        return (position < loanInfo.installments);
+    }
+
+    /**
+     * 次の返済回の返済情報を生成
+     *
+     * @return 返済情報。次回の呼び出しで内容が更新される
+     */
+    @Override
+    public PaymentRecord next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+
+        final long interest = Math.round((double)balance * loanInfo.annualRate / 12.0D);
+        long principal, total;
+        if (loanInfo.paymentType == PaymentType.CONSTANT_PAYMENT) {
+            principal = monthlyAmount - interest;
+            total = monthlyAmount;
+        }
+        else {
+            principal = monthlyAmount;
+            total = monthlyAmount + interest;
+        }
+        balance -= principal;
+        // 最終回の残元金が0でない場合は0になるように調整
+        if (position == loanInfo.installments - 1 && balance != 0) {
+            principal += balance;
+            total += balance;
+            balance = 0;
+        }
+
+        record.setIndex(position++);
+        record.setInterest(interest);
+        record.setPrincipal(principal);
+        record.setTotal(total);
+        record.setBalance(balance);
+        result.addPrincipal(principal);
+        result.addInterest(interest);
+        result.setBalance(balance);
+        return record;
+    }
+
+    /**
+     * これまでに生成した返済回の集計結果
+     *
+     * @return LoanResultオブジェクト。next()を呼び出すたびに更新される
+     */
+    public LoanResult getResult() {
+        return result;
+    }
+
+    /**
+     * 残りの返済回をすべて生成して配列に格納
+     *
+     * @param columns 格納先
+     */
+    void generate(final PaymentColumns columns) {
+        generate(columns, loanInfo.installments);
+    }
+
+    /**
+     * to回目の前までを生成して配列に格納
+     *
+     * @param columns 格納先
+     * @param to この回の前まで生成する
+     */
+    void generate(final PaymentColumns columns, final int to) {
+        while (position < to) {
+            final PaymentRecord r = next();
+            final int n = r.getIndex();
+            columns.reset(n);
+            columns.setPrepayment(n, 0);
+            columns.setRate(n, r.getRate());
+            columns.setInterest(n, r.getInterest());
+            columns.setPrincipal(n, r.getPrincipal());
+            columns.setTotal(n, r.getTotal());
+            columns.setBalance(n, r.getBalance());
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package nx.domain.loan.payment;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+import nx.domain.loan.model.PaymentRecord;
+
+/**
+ * 償還表のSpliterator<br>
+ * 返済回の範囲を二分して分割するため、並列処理でも各スレッドに均等に割り当てられる
+ */
+final class TableSpliterator implements Spliterator<PaymentRecord> {
+    private final AbstractPaymentTable table;
+    private int position;
+    private final int end;
+
+    TableSpliterator(final AbstractPaymentTable table, final int position, final int end) {
+        this.table = table;
+        this.position = position;
+        this.end = end;
+    }
+
+    @Override
+    public boolean tryAdvance(final Consumer<? super PaymentRecord> action) {
+        if (action == null)
+            throw new NullPointerException();
+        if (position >= end)
+            return false;
+        action.accept(table.get(position++));
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(final Consumer<? super PaymentRecord> action) {
+        if (action == null)
+            throw new NullPointerException();
+        for (; position < end; position++) {
+            action.accept(table.get(position));
+        }
+    }
+
+    @Override
+    public Spliterator<PaymentRecord> trySplit() {
+        final int middle = (position + end) >>> 1;
+        if (middle <= position)
+            return null;
+        final Spliterator<PaymentRecord> prefix = new TableSpliterator(table, position, middle);
+        position = middle;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        return end - position;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | SIZED | SUBSIZED | NONNULL;
+    }
+}
@@ -0,0 +1,195 @@
+package nx.domain.loan.payment;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.function.Consumer;
+
+import nx.domain.loan.model.LoanEvent;
+import nx.domain.loan.model.LoanInfo;
+
+/**
+ * 複数のスレッドから参照と変更を行う償還表<br>
+ * 参照用には変更されない償還表(スナップショット)を返し、変更のたびに新しいスナップショットに差し替える。
+ * 参照側は変更中でも待たされず、変更前の一貫した償還表を参照し続けられる。
+ * 変更は1つずつ順に処理する。変更側では前のスナップショットの複製を変更するため、変更されない返済回の値はコピーしない。
+ * 過去の版を保持する数を指定した場合は、過去の版を参照したり、過去の版に戻したりできる。
+ * 過去の版のスナップショットは再計算用の計算状態も保持しているため、戻す際に変更をやり直す必要はない。
+ */
+public class VersionedSchedule {
+    /**
+     * 現在のスナップショットと版数
+     */
+    private volatile Version current;
+
+    /**
+     * 保持する過去の版の数
+     */
+    private final int retainedVersions;
+
+    /**
+     * 保持している過去の版。古い順
+     */
+    private final ArrayDeque<Version> previous = new ArrayDeque<Version>();
+
+    /**
+     * 借り入れの初期条件から償還表を作成
+     *
+     * @param loanInfo 借り入れの初期条件
+     */
+    public VersionedSchedule(final LoanInfo loanInfo) {
+        this(AbstractPaymentTable.create(loanInfo));
+    }
+
+    /**
+     * 既存の償還表の現在の内容から開始
+     *
+     * @param table 最初の版とする償還表。以後この償還表を変更しても影響しない
+     */
+    public VersionedSchedule(final AbstractPaymentTable table) {
+        this(table, 0);
+    }
+
+    /**
+     * 既存の償還表の現在の内容から開始し、過去の版を保持する
+     *
+     * @param table 最初の版とする償還表。以後この償還表を変更しても影響しない
+     * @param retainedVersions 保持する過去の版の数。0の場合は保持しない
+     */
+    public VersionedSchedule(final AbstractPaymentTable table, final int retainedVersions) {
+        if (table == null)
+            throw new IllegalArgumentException("table cannot be null");
+        if (retainedVersions < 0)
+            throw new IllegalArgumentException("bad argument retainedVersions: " + retainedVersions);
+        this.retainedVersions = retainedVersions;
+        current = new Version(table.freeze(), 0);
+    }
+
+    /**
+     * 現在のスナップショットを取得<br>
+     * 変更中でも待たされない
+     *
+     * @return 読み取り専用の償還表
+     */
+    public AbstractPaymentTable snapshot() {
+        return current.table;
+    }
+
+    /**
+     * @return 現在のスナップショットの版数。最初は0で、変更のたびに1増える
+     */
+    public long getVersion() {
+        return current.number;
+    }
+
+    /**
+     * 償還表を変更して新しいスナップショットに差し替える<br>
+     * 変更中に例外が発生した場合は差し替えない
+     *
+     * @param edit 現在のスナップショットの複製を変更する処理
+     * @return 新しいスナップショット
+     */
+    public synchronized AbstractPaymentTable update(final Consumer<AbstractPaymentTable> edit) {
+        if (edit == null)
+            throw new IllegalArgumentException("edit cannot be null");
+        final AbstractPaymentTable table = current.table.fork();
+        edit.accept(table);
+        // 複製は外部から参照されないため、複製せずに読み取り専用にする
+        return replace(new ReadOnlyPaymentTable(table));
+    }
+
+    /**
+     * 指定した版のスナップショットを取得
+     *
+     * @param version 版数。現在の版または保持している過去の版
+     * @return 読み取り専用の償還表
+     */
+    public synchronized AbstractPaymentTable snapshot(final long version) {
+        return find(version).table;
+    }
+
+    /**
+     * 過去の版の内容に戻す<br>
+     * 指定した版のスナップショットをそのまま新しい版とするため、再計算やコピーは発生しない。
+     * 版数は戻さずに1増える
+     *
+     * @param version 戻す版の版数。現在の版または保持している過去の版
+     * @return 新しいスナップショット
+     */
+    public synchronized AbstractPaymentTable revert(final long version) {
+        return replace(find(version).table);
+    }
+
+    /**
+     * @return 保持する過去の版の数
+     */
+    public int getRetainedVersions() {
+        return retainedVersions;
+    }
+
+    /**
+     * 新しい版に差し替え、現在の版を過去の版として保持
+     */
+    private AbstractPaymentTable replace(final AbstractPaymentTable table) {
+        final Version last = current;
+        if (retainedVersions > 0) {
+            if (previous.size() == retainedVersions)
+                previous.removeFirst();
+            previous.addLast(last);
+        }
+        final Version next = new Version(table, last.number + 1);
+        current = next;
+        return next.table;
+    }
+
+    private Version find(final long version) {
+        if (version == current.number)
+            return current;
+        for (Version v : previous) {
+            if (v.number == version)
+                return v;
+        }
+        throw new IllegalArgumentException("bad argument version: " + version);
+    }
+
+    /**
+     * 繰り上げ返済
+     *
+     * @param n 繰り上げ返済を実施する返済回
+     * @param amount 繰り上げ返済の額
+     * @return 新しいスナップショット
+     */
+    public AbstractPaymentTable prepayment(final int n, final long amount) {
+        return update(table -> table.prepayment(n, amount));
+    }
+
+    /**
+     * 利率変更
+     *
+     * @param n 新しい利率を適用する返済回
+     * @param newRate 新しい利率
+     * @return 新しいスナップショット
+     */
+    public AbstractPaymentTable changeRate(final int n, final double newRate) {
+        return update(table -> table.changeRate(n, newRate));
+    }
+
+    /**
+     * 複数の繰り上げ返済と利率変更をまとめて処理
+     *
+     * @param events 繰り上げ返済と利率変更のリスト
+     * @return 新しいスナップショット
+     */
+    public AbstractPaymentTable apply(final List<LoanEvent> events) {
+        return update(table -> table.apply(events));
+    }
+
+    private static final class Version {
+        final AbstractPaymentTable table;
+        final long number;
+
+        Version(final AbstractPaymentTable table, final long number) {
+            this.table = table;
+            this.number = number;
+        }
+    }
+}
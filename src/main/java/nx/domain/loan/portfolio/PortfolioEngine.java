@@ -0,0 +1,250 @@
+package nx.domain.loan.portfolio;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+import nx.domain.loan.model.LoanEvent;
+import nx.domain.loan.model.LoanInfo;
+import nx.domain.loan.model.LoanInfo.RateType;
+import nx.domain.loan.model.LoanResult;
+import nx.domain.loan.payment.AbstractPaymentTable;
+
+/**
+ * 多数のローンの償還表を並列に作成<br>
+ * ローンのリストを分割しながらForkJoinPoolで処理し、作成した償還表を順次ScheduleConsumerに渡す。
+ * 償還表は渡した後に破棄するため、ローンの件数によらず使用メモリはスレッド数程度の償還表に収まる。
+ */
+public class PortfolioEngine {
+    /**
+     * これ以下の件数になったら分割せずに処理する
+     */
+    private static final int BATCH_SIZE = 32;
+
+    private final ForkJoinPool pool;
+
+    /**
+     * 利用可能なプロセッサ数のスレッドで処理
+     */
+    public PortfolioEngine() {
+        this(new ForkJoinPool());
+    }
+
+    /**
+     * @param pool 処理に使うForkJoinPool
+     */
+    public PortfolioEngine(final ForkJoinPool pool) {
+        if (pool == null)
+            throw new IllegalArgumentException("pool cannot be null");
+        this.pool = pool;
+    }
+
+    /**
+     * 償還表を並列に作成
+     *
+     * @param loans ローンのリスト
+     * @param events ローンごとの繰り上げ返済と利率変更。loansと同じ順序。条件変更がなければnullでもよい
+     * @param consumer 作成した償還表を受け取る処理
+     */
+    public void build(final List<LoanInfo> loans, final List<? extends List<LoanEvent>> events,
+                      final ScheduleConsumer consumer) {
+        if (loans == null)
+            throw new IllegalArgumentException("loans cannot be null");
+        if (events != null && events.size() != loans.size())
+            throw new IllegalArgumentException("events must have the same size as loans");
+        if (consumer == null)
+            throw new IllegalArgumentException("consumer cannot be null");
+        pool.invoke(new BuildTask(loans, events, consumer, 0, loans.size()));
+    }
+
+    /**
+     * 償還表を並列に作成して集計結果だけを返す
+     *
+     * @param loans ローンのリスト
+     * @param events ローンごとの繰り上げ返済と利率変更。loansと同じ順序。条件変更がなければnullでもよい
+     * @return ローンごとの集計結果。loansと同じ順序
+     */
+    public LoanResult[] summarize(final List<LoanInfo> loans, final List<? extends List<LoanEvent>> events) {
+        final LoanResult results[] = new LoanResult[(loans == null) ? 0 : loans.size()];
+        build(loans, events, new ScheduleConsumer() {
+            @Override
+            public void accept(final int index, final AbstractPaymentTable table) {
+                results[index] = table.getResult();
+            }
+        });
+        return results;
+    }
+
+    /**
+     * すべてのローンのn回目以降の利率を変更<br>
+     * 償還表を並列に変更し、変更前と変更後の集計結果の合計を返す。
+     * 固定金利のローン、読み取り専用の償還表、返済回数がn回以下のローンは変更せずに件数だけを数える。
+     * 各償還表はchangeRate()で変更するため、ConstantPaymentStandardでは変更した回以前の途中状態から再計算する。
+     * 引数はどの償還表も変更する前にすべて確認し、nullや同じ償還表が複数含まれる場合は何も変更せずに例外を投げる。
+     * 処理中は同じ償還表を他のスレッドから参照しないこと
+     *
+     * @param tables 変更する償還表のリスト
+     * @param n 利率を変更する返済回
+     * @param newRate 新しい利率
+     * @param listener 進み具合を受け取る処理。不要であればnull
+     * @return 変更前と変更後の集計結果
+     */
+    public RateResetResult resetRates(final List<? extends AbstractPaymentTable> tables, final int n, final double newRate,
+                                      final ProgressListener listener) {
+        if (tables == null)
+            throw new IllegalArgumentException("tables cannot be null");
+        final int indexes[] = new int[tables.size()];
+        final double rates[] = new double[tables.size()];
+        Arrays.fill(indexes, n);
+        Arrays.fill(rates, newRate);
+        return resetRates(tables, indexes, rates, listener);
+    }
+
+    /**
+     * ローンごとに指定した回以降の利率を変更<br>
+     * 変更しないローンや並列処理の扱いはresetRates(List, int, double, ProgressListener)と同じ
+     *
+     * @param tables 変更する償還表のリスト
+     * @param indexes ローンごとの利率を変更する返済回。tablesと同じ順序
+     * @param rates ローンごとの新しい利率。tablesと同じ順序
+     * @param listener 進み具合を受け取る処理。不要であればnull
+     * @return 変更前と変更後の集計結果
+     */
+    public RateResetResult resetRates(final List<? extends AbstractPaymentTable> tables, final int indexes[], final double rates[],
+                                      final ProgressListener listener) {
+        if (tables == null)
+            throw new IllegalArgumentException("tables cannot be null");
+        if (indexes == null || indexes.length != tables.size())
+            throw new IllegalArgumentException("indexes must have the same size as tables");
+        if (rates == null || rates.length != tables.size())
+            throw new IllegalArgumentException("rates must have the same size as tables");
+        // 一部のローンだけを変更した状態で終わらないよう、変更を始める前に確認する
+        final Set<AbstractPaymentTable> distinct =
+                Collections.newSetFromMap(new IdentityHashMap<AbstractPaymentTable, Boolean>());
+        for (int i = 0; i < indexes.length; i++) {
+            final AbstractPaymentTable table = tables.get(i);
+            if (table == null)
+                throw new IllegalArgumentException("table cannot be null: " + i);
+            // 同じ償還表を複数のスレッドから同時に変更しない
+            if (!distinct.add(table))
+                throw new IllegalArgumentException("duplicate table: " + i);
+            if (indexes[i] < 0)
+                throw new IllegalArgumentException("bad argument n: " + indexes[i]);
+            if (!(rates[i] >= 0D))
+                throw new IllegalArgumentException("bad rate: " + rates[i]);
+        }
+        return new RateResetResult(pool.invoke(new ResetTask(tables, indexes, rates,
+                listener, new AtomicLong(), 0, tables.size())));
+    }
+
+    /**
+     * 処理に使うスレッドを終了
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * ローンのリストの[from, to)の範囲を処理
+     */
+    private static final class BuildTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<LoanInfo> loans;
+        private final List<? extends List<LoanEvent>> events;
+        private final ScheduleConsumer consumer;
+        private final int from;
+        private final int to;
+
+        BuildTask(final List<LoanInfo> loans, final List<? extends List<LoanEvent>> events,
+                  final ScheduleConsumer consumer, final int from, final int to) {
+            this.loans    = loans;
+            this.events   = events;
+            this.consumer = consumer;
+            this.from     = from;
+            this.to       = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= BATCH_SIZE) {
+                for (int i = from; i < to; i++) {
+                    consumer.accept(i, build(i));
+                }
+            }
+            else {
+                final int middle = (from + to) >>> 1;
+                invokeAll(new BuildTask(loans, events, consumer, from, middle),
+                          new BuildTask(loans, events, consumer, middle, to));
+            }
+        }
+
+        private AbstractPaymentTable build(final int i) {
+            final AbstractPaymentTable table = AbstractPaymentTable.create(loans.get(i));
+            final List<LoanEvent> e = (events == null) ? null : events.get(i);
+            if (e != null && !e.isEmpty())
+                table.apply(e);
+            return table;
+        }
+    }
+
+    /**
+     * 償還表のリストの[from, to)の範囲の利率を変更
+     */
+    private static final class ResetTask extends RecursiveTask<RateResetResult.Totals> {
+        private static final long serialVersionUID = 1L;
+
+        private final List<? extends AbstractPaymentTable> tables;
+        private final int indexes[];
+        private final double rates[];
+        private final ProgressListener listener;
+        private final AtomicLong completed;
+        private final int from;
+        private final int to;
+
+        ResetTask(final List<? extends AbstractPaymentTable> tables, final int indexes[], final double rates[],
+                  final ProgressListener listener, final AtomicLong completed, final int from, final int to) {
+            this.tables    = tables;
+            this.indexes   = indexes;
+            this.rates     = rates;
+            this.listener  = listener;
+            this.completed = completed;
+            this.from      = from;
+            this.to        = to;
+        }
+
+        @Override
+        protected RateResetResult.Totals compute() {
+            if (to - from <= BATCH_SIZE) {
+                final RateResetResult.Totals totals = new RateResetResult.Totals();
+                for (int i = from; i < to; i++) {
+                    final AbstractPaymentTable table = tables.get(i);
+                    final LoanInfo loanInfo = table.getLoanInfo();
+                    if (loanInfo.rateType == RateType.FIXED || table.isReadOnly() || indexes[i] >= loanInfo.installments) {
+                        totals.skipped++;
+                        continue;
+                    }
+                    totals.before.add(table.getResult());
+                    table.changeRate(indexes[i], rates[i]);
+                    totals.after.add(table.getResult());
+                    totals.changed++;
+                }
+                final long done = completed.addAndGet(to - from);
+                if (listener != null)
+                    listener.progress(done, tables.size());
+                return totals;
+            }
+            final int middle = (from + to) >>> 1;
+            final ResetTask second = new ResetTask(tables, indexes, rates, listener, completed, middle, to);
+            second.fork();
+            final RateResetResult.Totals first = new ResetTask(tables, indexes, rates, listener, completed, from, middle).compute();
+            return first.merge(second.join());
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package nx.domain.loan.portfolio;
+
+/**
+ * 多数のローンを処理する間の進み具合を受け取る<br>
+ * 複数のスレッドから同時に呼び出されるため、スレッドセーフに実装すること
+ */
+public interface ProgressListener {
+    /**
+     * 一定の件数を処理するごとに呼び出される
+     *
+     * @param completed 処理を終えたローンの件数。呼び出される順序によっては前回より小さいことがある
+     * @param total ローンの件数
+     */
+    void progress(long completed, long total);
+}
@@ -0,0 +1,115 @@
+package nx.domain.loan.portfolio;
+
+import nx.domain.loan.model.LoanResult;
+
+/**
+ * 多数のローンの利率を一括で変更した結果<br>
+ * 利率を変更したローンの変更前と変更後の集計結果を、ローン全体で合計して保持する。
+ * 元金残高と未払い利息残高も最終回の支払い後の額の合計になる
+ */
+public class RateResetResult {
+    private final LoanResult before;
+    private final LoanResult after;
+    private final int changed;
+    private final int skipped;
+
+    RateResetResult(final Totals totals) {
+        this.before  = totals.before.toResult();
+        this.after   = totals.after.toResult();
+        this.changed = totals.changed;
+        this.skipped = totals.skipped;
+    }
+
+    /**
+     * @return 利率を変更したローンの、変更前の集計結果の合計
+     */
+    public LoanResult getBefore() { return before; }
+
+    /**
+     * @return 利率を変更したローンの、変更後の集計結果の合計
+     */
+    public LoanResult getAfter() { return after; }
+
+    /**
+     * @return 変更後から変更前を引いた差
+     */
+    public LoanResult getDelta() {
+        final LoanResult delta = new LoanResult();
+        delta.addPrincipal(after.getPrincipal() - before.getPrincipal());
+        delta.addInterest(after.getInterest() - before.getInterest());
+        delta.addPrepayment(after.getPrepayment() - before.getPrepayment());
+        delta.addAccruedInterestPaid(after.getAccruedInterestPaid() - before.getAccruedInterestPaid());
+        delta.setBalance(after.getBalance() - before.getBalance());
+        delta.setAccruedInterestBalance(after.getAccruedInterestBalance() - before.getAccruedInterestBalance());
+        return delta;
+    }
+
+    /**
+     * @return 利率を変更したローンの件数
+     */
+    public int getChanged() { return changed; }
+
+    /**
+     * @return 固定金利、読み取り専用、変更する回が返済回数以上のいずれかのため、変更しなかったローンの件数
+     */
+    public int getSkipped() { return skipped; }
+
+    /**
+     * スレッドごとに集計する途中の合計
+     */
+    static final class Totals {
+        final Sum before = new Sum();
+        final Sum after = new Sum();
+        int changed;
+        int skipped;
+
+        Totals merge(final Totals other) {
+            before.add(other.before);
+            after.add(other.after);
+            changed += other.changed;
+            skipped += other.skipped;
+            return this;
+        }
+    }
+
+    /**
+     * LoanResultの各項目の合計
+     */
+    static final class Sum {
+        long principal;
+        long interest;
+        long prepayment;
+        long accruedInterestPaid;
+        long balance;
+        long accruedInterestBalance;
+
+        void add(final LoanResult result) {
+            principal              += result.getPrincipal();
+            interest               += result.getInterest();
+            prepayment             += result.getPrepayment();
+            accruedInterestPaid    += result.getAccruedInterestPaid();
+            balance                += result.getBalance();
+            accruedInterestBalance += result.getAccruedInterestBalance();
+        }
+
+        void add(final Sum other) {
+            principal              += other.principal;
+            interest               += other.interest;
+            prepayment             += other.prepayment;
+            accruedInterestPaid    += other.accruedInterestPaid;
+            balance                += other.balance;
+            accruedInterestBalance += other.accruedInterestBalance;
+        }
+
+        LoanResult toResult() {
+            final LoanResult result = new LoanResult();
+            result.addPrincipal(principal);
+            result.addInterest(interest);
+            result.addPrepayment(prepayment);
+            result.addAccruedInterestPaid(accruedInterestPaid);
+            result.setBalance(balance);
+            result.setAccruedInterestBalance(accruedInterestBalance);
+            return result;
+        }
+    }
+}
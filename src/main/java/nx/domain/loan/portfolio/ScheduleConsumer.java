@@ -0,0 +1,15 @@
+package nx.domain.loan.portfolio;
+
+import nx.domain.loan.payment.AbstractPaymentTable;
+
+/**
+ * 作成した償還表を受け取る処理<br>
+ * 複数のスレッドから同時に呼び出されるため、スレッドセーフに実装すること
+ */
+public interface ScheduleConsumer {
+    /**
+     * @param index 入力したローンのリスト上の位置
+     * @param table 作成した償還表。呼び出し後は参照を保持しない限り破棄される
+     */
+    void accept(int index, AbstractPaymentTable table);
+}
@@ -0,0 +1,265 @@
+package nx.domain.loan.sample;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import nx.domain.loan.model.LoanInfo;
+import nx.domain.loan.model.LoanInfo.PaymentType;
+import nx.domain.loan.model.LoanInfo.PrepaymentType;
+import nx.domain.loan.model.LoanInfo.RateType;
+import nx.domain.loan.model.LoanResult;
+import nx.domain.loan.model.PaymentRecord;
+import nx.domain.loan.payment.ScheduleGenerator;
+
+/**
+ * 多数の借り入れ条件の償還表をまとめて計算<br>
+ * 入力は1行に1件の借り入れ条件で、カンマ区切りの 借入額,年数,月数,利率[,返済方式[,繰り上げ返済方式]]。
+ * 返済方式はCONSTANT_PAYMENTまたはEQUAL_PRINCIPAL_PAYMENT(省略時はCONSTANT_PAYMENT)、
+ * 繰り上げ返済方式はAMOUNTまたはDURATION(省略時はDURATION)。空行と#で始まる行は無視する。
+ * 計算は複数のスレッドで行い、結果は入力の順に出力する。
+ * 行ごとの書式化ではString.formatを使わず、スレッドごとに再利用するバッファに直接書き込む
+ */
+public class BatchCalculator {
+    /**
+     * 出力形式
+     */
+    public enum Format {
+        /**
+         * カンマ区切り。先頭に見出し行を出力する
+         */
+        CSV,
+        /**
+         * 固定幅
+         */
+        FIXED
+    }
+
+    private static final int FIXED_WIDTH = 14;
+
+    private final Format format;
+    private final boolean summaryOnly;
+    private final int threads;
+
+    private final ThreadLocal<StringBuilder> buffers = new ThreadLocal<StringBuilder>() {
+        @Override
+        protected StringBuilder initialValue() {
+            return new StringBuilder(64 * 1024);
+        }
+    };
+
+    /**
+     * @param format 出力形式
+     * @param summaryOnly trueの場合は借り入れ条件ごとに集計結果だけを出力
+     * @param threads 計算に使用するスレッド数
+     */
+    public BatchCalculator(final Format format, final boolean summaryOnly, final int threads) {
+        if (format == null)
+            throw new IllegalArgumentException("format cannot be null");
+        if (threads <= 0)
+            throw new IllegalArgumentException("bad threads: " + threads);
+        this.format = format;
+        this.summaryOnly = summaryOnly;
+        this.threads = threads;
+    }
+
+    /**
+     * 入力のすべての借り入れ条件を計算して出力
+     *
+     * @param in 借り入れ条件
+     * @param out 出力先。終了時にflushする
+     * @return 計算した借り入れ条件の数
+     */
+    public int run(final Reader in, final Writer out) throws IOException {
+        final BufferedReader reader = new BufferedReader(in, 64 * 1024);
+        final BufferedWriter writer = new BufferedWriter(out, 64 * 1024);
+        final ExecutorService pool = Executors.newFixedThreadPool(threads);
+        // 出力待ちの結果の数を制限し、大きな入力でもメモリを使い切らないようにする
+        final int window = threads * 4;
+        final ArrayDeque<Future<String>> pending = new ArrayDeque<Future<String>>(window);
+        int count = 0;
+        try {
+            writeHeader(writer);
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#"))
+                    continue;
+                final LoanInfo loanInfo = parse(line, lineNumber);
+                final int id = ++count;
+                pending.add(pool.submit(() -> calculate(id, loanInfo)));
+                if (pending.size() >= window)
+                    writer.write(take(pending));
+            }
+            while (!pending.isEmpty())
+                writer.write(take(pending));
+            writer.flush();
+        }
+        finally {
+            pool.shutdownNow();
+        }
+        return count;
+    }
+
+    private static String take(final ArrayDeque<Future<String>> pending) throws IOException {
+        try {
+            return pending.poll().get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted", e);
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException)e.getCause();
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * 1行の借り入れ条件を解析
+     */
+    static LoanInfo parse(final String line, final int lineNumber) {
+        final String fields[] = line.split(",");
+        if (fields.length < 4 || fields.length > 6)
+            throw new IllegalArgumentException("bad line " + lineNumber + ": " + line);
+        try {
+            final long amount = Long.parseLong(fields[0].trim());
+            final int years = Integer.parseInt(fields[1].trim());
+            final int months = Integer.parseInt(fields[2].trim());
+            final double rate = Double.parseDouble(fields[3].trim());
+            final PaymentType paymentType = (fields.length > 4)
+                    ? PaymentType.valueOf(fields[4].trim()) : PaymentType.CONSTANT_PAYMENT;
+            final PrepaymentType prepaymentType = (fields.length > 5)
+                    ? PrepaymentType.valueOf(fields[5].trim()) : PrepaymentType.DURATION;
+            return new LoanInfo(amount, years, months, rate, RateType.VARIABLE, paymentType, prepaymentType);
+        }
+        catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("bad line " + lineNumber + ": " + line, e);
+        }
+    }
+
+    private void writeHeader(final Writer writer) throws IOException {
+        final String columns[] = summaryOnly
+                ? new String[] { "loan", "amount", "installments", "rate", "principal", "interest", "total", "balance" }
+                : new String[] { "loan", "installment", "rate", "principal", "interest", "total", "balance" };
+        final StringBuilder sb = new StringBuilder();
+        for (String column : columns)
+            field(sb, column);
+        endLine(sb);
+        writer.write(sb.toString());
+    }
+
+    /**
+     * 借り入れ条件1件を計算して書式化
+     *
+     * @param id 入力の何件目か(1から)
+     * @param loanInfo 借り入れ条件
+     * @return 出力する文字列
+     */
+    private String calculate(final int id, final LoanInfo loanInfo) {
+        final StringBuilder sb = buffers.get();
+        sb.setLength(0);
+        final ScheduleGenerator generator = new ScheduleGenerator(loanInfo);
+        if (summaryOnly) {
+            while (generator.hasNext())
+                generator.next();
+            final LoanResult result = generator.getResult();
+            field(sb, id);
+            field(sb, loanInfo.amount);
+            field(sb, loanInfo.installments);
+            rate(sb, loanInfo.annualRate);
+            field(sb, result.getPrincipal());
+            field(sb, result.getInterest());
+            field(sb, result.getTotal());
+            field(sb, result.getBalance());
+            endLine(sb);
+        }
+        else {
+            while (generator.hasNext()) {
+                final PaymentRecord r = generator.next();
+                field(sb, id);
+                field(sb, r.getIndex() + 1);
+                rate(sb, r.getRate());
+                field(sb, r.getPrincipal());
+                field(sb, r.getInterest());
+                field(sb, r.getTotal());
+                field(sb, r.getBalance());
+                endLine(sb);
+            }
+        }
+        return sb.toString();
+    }
+
+    private void field(final StringBuilder sb, final long value) {
+        if (format == Format.CSV) {
+            separator(sb);
+            sb.append(value);
+        }
+        else {
+            pad(sb, digits(value));
+            sb.append(value);
+        }
+    }
+
+    private void field(final StringBuilder sb, final String value) {
+        if (format == Format.CSV) {
+            separator(sb);
+        }
+        else {
+            pad(sb, value.length());
+        }
+        sb.append(value);
+    }
+
+    /**
+     * 利率を百分率の小数点以下3桁で出力
+     */
+    private void rate(final StringBuilder sb, final double rate) {
+        final long thousandths = Math.round(rate * 100000D);
+        final long fraction = thousandths % 1000;
+        final int length = digits(thousandths / 1000) + 4;
+        if (format == Format.CSV)
+            separator(sb);
+        else
+            pad(sb, length);
+        sb.append(thousandths / 1000).append('.');
+        if (fraction < 100)
+            sb.append('0');
+        if (fraction < 10)
+            sb.append('0');
+        sb.append(fraction);
+    }
+
+    private static void separator(final StringBuilder sb) {
+        if (sb.length() > 0 && sb.charAt(sb.length() - 1) != '\n')
+            sb.append(',');
+    }
+
+    private static void pad(final StringBuilder sb, final int length) {
+        for (int i = length; i < FIXED_WIDTH; i++)
+            sb.append(' ');
+    }
+
+    private static void endLine(final StringBuilder sb) {
+        sb.append('\n');
+    }
+
+    private static int digits(long value) {
+        int digits = (value < 0) ? 2 : 1;
+        while (value <= -10 || value >= 10) {
+            value /= 10;
+            digits++;
+        }
+        return digits;
+    }
+}
@@ -1,5 +1,13 @@
 package nx.domain.loan.sample;
 
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
 import org.apache.commons.cli.DefaultParser;
@@ -20,6 +28,10 @@ import nx.domain.loan.payment.ConstantPaymentStandard;
  *
  * 実行方法
  * java -cp target/libloan-1.0.0-jar-with-dependencies.jar -Dfile.encoding=UTF-8 nx.domain.loan.sample.ConstantPaymentCalculator
+ *
+ * -bを指定した場合は、ファイル(-の場合は標準入力)から読み込んだ多数の借り入れ条件をまとめて計算する。
+ * 入力の形式はBatchCalculatorを参照
+ * java -cp target/libloan-1.0.0-jar-with-dependencies.jar nx.domain.loan.sample.ConstantPaymentCalculator -b loans.csv -f fixed -s -t 8
  */
 public class ConstantPaymentCalculator {
     private static long getAmount(final CommandLine options) throws Exception {
@@ -54,12 +66,52 @@ public class ConstantPaymentCalculator {
             return Double.parseDouble(rate);
     }
 
+    private static BatchCalculator.Format getFormat(final CommandLine options) throws Exception {
+        final String format = options.getOptionValue('f');
+        if (format == null)
+            return BatchCalculator.Format.CSV;
+        else
+            return BatchCalculator.Format.valueOf(format.toUpperCase());
+    }
+
+    private static int getThreads(final CommandLine options) throws Exception {
+        final String threads = options.getOptionValue('t');
+        if (threads == null)
+            return Runtime.getRuntime().availableProcessors();
+        else
+            return Integer.parseInt(threads);
+    }
+
+    private static void batch(final CommandLine options) throws Exception {
+        final BatchCalculator calculator = new BatchCalculator(getFormat(options), options.hasOption('s'), getThreads(options));
+        final String input = options.getOptionValue('b');
+        final String output = options.getOptionValue('o');
+        try (Reader in = "-".equals(input)
+                ? new InputStreamReader(System.in, StandardCharsets.UTF_8)
+                : new InputStreamReader(new FileInputStream(input), StandardCharsets.UTF_8)) {
+            if (output == null) {
+                final Writer out = new OutputStreamWriter(System.out, StandardCharsets.UTF_8);
+                calculator.run(in, out);
+            }
+            else {
+                try (Writer out = new OutputStreamWriter(new FileOutputStream(output), StandardCharsets.UTF_8)) {
+                    calculator.run(in, out);
+                }
+            }
+        }
+    }
+
     public static void main(String[] args) throws Exception {
         Options options = new Options()
         .addOption("a", true, "借入額")
         .addOption("y", true, "返済期間(年)")
         .addOption("m", true, "返済期間(月)")
-        .addOption("r", true, "利率(0.01=1%)");
+        .addOption("r", true, "利率(0.01=1%)")
+        .addOption("b", true, "借り入れ条件のファイル(-は標準入力)")
+        .addOption("f", true, "-bの出力形式(csv/fixed)")
+        .addOption("s", false, "-bで集計結果だけを出力")
+        .addOption("t", true, "-bの計算スレッド数")
+        .addOption("o", true, "-bの出力ファイル");
         CommandLineParser parser = new DefaultParser();
         CommandLine cmd = null;
         try {
@@ -71,6 +123,11 @@ public class ConstantPaymentCalculator {
             return;
         }
 
+        if (cmd.hasOption('b')) {
+            batch(cmd);
+            return;
+        }
+
         long   amount       = getAmount(cmd);
         int    years        = getYears(cmd);
         int    months       = getMonths(cmd);
@@ -0,0 +1,115 @@
+package nx.domain.loan.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import nx.domain.loan.model.LoanEvent;
+import nx.domain.loan.model.LoanInfo;
+import nx.domain.loan.model.LoanInfo.PaymentType;
+import nx.domain.loan.model.LoanInfo.PrepaymentType;
+import nx.domain.loan.model.LoanInfo.RateType;
+import nx.domain.loan.payment.AbstractPaymentTable;
+import nx.domain.loan.payment.ConstantPaymentSimple;
+import nx.domain.loan.payment.ConstantPaymentStandard;
+import nx.domain.loan.payment.EqualPrincipalPayment;
+import nx.domain.loan.payment.TablePrinter;
+
+public class ScheduleReaderTest extends TablePrinter {
+    private final LoanInfo loanInfo = new LoanInfo(30000000, 35, 0, 0.00775, RateType.VARIABLE,
+            PaymentType.CONSTANT_PAYMENT, PrepaymentType.AMOUNT);
+
+    private static byte[] write(final AbstractPaymentTable... tables) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ScheduleWriter writer = new ScheduleWriter(out)) {
+            for (AbstractPaymentTable table : tables)
+                writer.write(table);
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        ConstantPaymentStandard standard = new ConstantPaymentStandard(loanInfo);
+        standard.changeRate(24, 0.06);
+        standard.prepayment(100, 1000000);
+        ConstantPaymentSimple simple = new ConstantPaymentSimple(loanInfo);
+        simple.apply(Arrays.asList(LoanEvent.prepayment(36, 500000), LoanEvent.changeRate(12, 0.02)));
+        EqualPrincipalPayment equal = new EqualPrincipalPayment(new LoanInfo(30000000, 35, 0, 0.00775,
+                RateType.VARIABLE, PaymentType.EQUAL_PRINCIPAL_PAYMENT, PrepaymentType.DURATION));
+        equal.prepayment(50, 2000000);
+
+        ScheduleReader reader = new ScheduleReader(new ByteArrayInputStream(write(standard, simple.freeze(), equal)));
+        for (AbstractPaymentTable expected : new AbstractPaymentTable[] { standard, simple, equal }) {
+            assertTrue(reader.next());
+            assertEquals(expected.getLoanInfo(), reader.getLoanInfo());
+            assertEquals(expected.getHistory().toString(), reader.getHistory().toString());
+            AbstractPaymentTable table = reader.readTable();
+            assertEquals(expected.getClass(), table.getClass());
+            assertSameTable(expected, table);
+            assertEquals(expected.getResult().getTotal(), table.getResult().getTotal());
+        }
+        assertFalse(reader.next());
+    }
+
+    @Test
+    public void testEditAfterRead() throws IOException {
+        ConstantPaymentStandard table = new ConstantPaymentStandard(loanInfo);
+        table.changeRate(24, 0.03);
+        ScheduleReader reader = new ScheduleReader(new ByteArrayInputStream(write(table)));
+        reader.next();
+        AbstractPaymentTable restored = reader.readTable();
+        table.prepayment(200, 1000000);
+        restored.prepayment(200, 1000000);
+        assertSameTable(table, restored);
+        assertEquals(table.getHistory().toString(), restored.getHistory().toString());
+    }
+
+    @Test
+    public void testReadColumn() throws IOException {
+        ConstantPaymentStandard table1 = new ConstantPaymentStandard(loanInfo);
+        table1.changeRate(60, 0.02);
+        ConstantPaymentStandard table2 = new ConstantPaymentStandard(loanInfo);
+        ScheduleReader reader = new ScheduleReader(new ByteArrayInputStream(write(table1, table2)));
+
+        reader.next();
+        assertArrayEquals(table1.rates(), reader.readRates(), 0D);
+        assertArrayEquals(table1.balances(), reader.readColumn(ScheduleColumn.BALANCE));
+        assertArrayEquals(table1.prepayments(), reader.readColumn(ScheduleColumn.PREPAYMENT));
+        // 残りの項目は読み飛ばす
+        reader.next();
+        assertArrayEquals(table2.interests(), reader.readColumn(ScheduleColumn.INTEREST));
+        assertFalse(reader.next());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testReadColumnBackwards() throws IOException {
+        ScheduleReader reader = new ScheduleReader(new ByteArrayInputStream(write(new ConstantPaymentStandard(loanInfo))));
+        reader.next();
+        reader.readColumn(ScheduleColumn.BALANCE);
+        reader.readColumn(ScheduleColumn.PRINCIPAL);
+    }
+
+    @Test
+    public void testSize() throws IOException {
+        ConstantPaymentStandard table = new ConstantPaymentStandard(loanInfo);
+        table.changeRate(24, 0.02);
+        table.prepayment(100, 1000000);
+        // 420回 x 9項目 x 8バイトの1/4未満
+        int size = write(table).length;
+        assertTrue("size " + size, size < 420 * 9 * 8 / 4);
+    }
+
+    @Test(expected = IOException.class)
+    public void testBadFormat() throws IOException {
+        new ScheduleReader(new ByteArrayInputStream("LOAN, CSV".getBytes())).next();
+    }
+}
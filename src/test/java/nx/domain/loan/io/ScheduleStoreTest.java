@@ -0,0 +1,151 @@
+package nx.domain.loan.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import nx.domain.loan.model.LoanInfo;
+import nx.domain.loan.model.LoanInfo.PaymentType;
+import nx.domain.loan.model.LoanInfo.PrepaymentType;
+import nx.domain.loan.model.LoanInfo.RateType;
+import nx.domain.loan.payment.AbstractPaymentTable;
+import nx.domain.loan.payment.ConstantPaymentSimple;
+import nx.domain.loan.payment.ConstantPaymentStandard;
+import nx.domain.loan.payment.EqualPrincipalPayment;
+import nx.domain.loan.payment.TablePrinter;
+
+public class ScheduleStoreTest extends TablePrinter {
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+    private final LoanInfo loanInfo = new LoanInfo(30000000, 35, 0, 0.00775, RateType.VARIABLE,
+            PaymentType.CONSTANT_PAYMENT, PrepaymentType.AMOUNT);
+
+    @Test
+    public void testReopen() throws IOException {
+        ConstantPaymentStandard standard = new ConstantPaymentStandard(loanInfo);
+        standard.changeRate(24, 0.06);
+        standard.prepayment(100, 1000000);
+        ConstantPaymentSimple simple = new ConstantPaymentSimple(new LoanInfo(10000000, 10, 0, 0.01,
+                RateType.VARIABLE, PaymentType.CONSTANT_PAYMENT, PrepaymentType.DURATION));
+        simple.prepayment(12, 1000000);
+        EqualPrincipalPayment equal = new EqualPrincipalPayment(new LoanInfo(20000000, 50, 0, 0.005,
+                RateType.FIXED, PaymentType.EQUAL_PRINCIPAL_PAYMENT, PrepaymentType.AMOUNT));
+
+        Path file = folder.getRoot().toPath().resolve("schedules.bin");
+        try (ScheduleStore store = ScheduleStore.create(file, 600)) {
+            assertEquals(0, store.add(standard));
+            assertEquals(1, store.add(simple.freeze()));
+            assertEquals(2, store.add(equal));
+        }
+
+        try (ScheduleStore store = ScheduleStore.open(file)) {
+            assertEquals(3, store.size());
+            assertEquals(600, store.getMaxInstallments());
+            AbstractPaymentTable[] expected = { standard, simple, equal };
+            for (int i = 0; i < expected.length; i++) {
+                AbstractPaymentTable table = store.get(i);
+                assertTrue(table.isReadOnly());
+                assertEquals(expected[i].getLoanInfo(), table.getLoanInfo());
+                assertEquals(expected[i].getHistory().toString(), table.getHistory().toString());
+                assertSameTable(expected[i], table);
+                assertEquals(expected[i].getResult().getTotal(), table.getResult().getTotal());
+                assertEquals(expected[i].getResult(60, 90).getInterest(), table.getResult(60, 90).getInterest());
+                assertEquals(expected[i].getResult(60, 90).getBalance(), table.getResult(60, 90).getBalance());
+                assertEquals(expected[i].getResult(0, 0).getBalance(), table.getResult(0, 0).getBalance());
+                assertSame(table, table.freeze());
+                assertEquals(expected[i].getClass(), table.getEngineType());
+                assertEquals(expected[i].getClass(), table.fork().getClass());
+            }
+        }
+    }
+
+    @Test
+    public void testForkAndEdit() throws IOException {
+        try (ScheduleStore store = ScheduleStore.create(folder.newFile().toPath(), 420)) {
+            store.add(new ConstantPaymentStandard(loanInfo));
+            AbstractPaymentTable branch = store.get(0).fork();
+            branch.prepayment(100, 1000000);
+
+            ConstantPaymentStandard expected = new ConstantPaymentStandard(loanInfo);
+            expected.prepayment(100, 1000000);
+            assertSameTable(expected, branch);
+            assertSameTable(new ConstantPaymentStandard(loanInfo), store.get(0));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTooManyInstallments() throws IOException {
+        try (ScheduleStore store = ScheduleStore.create(folder.newFile().toPath(), 120)) {
+            store.add(new ConstantPaymentStandard(loanInfo));
+        }
+    }
+
+    @Test
+    public void testHistory() throws IOException {
+        ConstantPaymentStandard table = new ConstantPaymentStandard(loanInfo);
+        table.prepayment(417, 3000000);
+        table.changeRate(60, 0.03);
+        try (ScheduleStore store = ScheduleStore.create(folder.newFile().toPath(), 420, 2)) {
+            assertEquals(2, store.getMaxEvents());
+            store.add(table);
+            AbstractPaymentTable stored = store.get(0);
+            assertEquals(table.getHistory().toString(), stored.getHistory().toString());
+            // 減額した繰上額は配列に、指定した額は変更履歴に残る
+            assertEquals(3000000, stored.getHistory().get(0).amount);
+            assertEquals(table.get(417).getPrepayment(), stored.get(417).getPrepayment());
+
+            AbstractPaymentTable branch = stored.fork();
+            branch.changeRate(120, 0.02);
+            table.changeRate(120, 0.02);
+            assertEquals(table.getHistory().toString(), branch.getHistory().toString());
+            assertSameTable(table, branch);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTooManyEvents() throws IOException {
+        ConstantPaymentStandard table = new ConstantPaymentStandard(loanInfo);
+        table.changeRate(24, 0.02);
+        table.changeRate(36, 0.03);
+        try (ScheduleStore store = ScheduleStore.create(folder.newFile().toPath(), 420, 1)) {
+            store.add(table);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTooLargeSlot() throws IOException {
+        // 1件の領域が2GBを超える
+        ScheduleStore.create(folder.newFile().toPath(), Integer.MAX_VALUE / 72 + 1);
+    }
+
+    @Test(expected = IOException.class)
+    public void testOpenTooLargeSlot() throws IOException {
+        Path file = folder.newFile().toPath();
+        ScheduleStore.create(file, 420).close();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            ByteBuffer stride = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+            stride.putInt(0, Integer.MAX_VALUE / 72 + 1);
+            channel.write(stride, 8);
+        }
+        ScheduleStore.open(file);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testReadOnly() throws IOException {
+        try (ScheduleStore store = ScheduleStore.create(folder.newFile().toPath(), 420)) {
+            store.add(new ConstantPaymentStandard(loanInfo));
+            store.get(0).changeRate(10, 0.02);
+        }
+    }
+}
@@ -2,13 +2,17 @@ package nx.domain.loan.payment;
 
 import static org.junit.Assert.assertEquals;
 
+import java.util.Arrays;
+
 import org.junit.Before;
 import org.junit.Test;
 
+import nx.domain.loan.model.LoanEvent;
 import nx.domain.loan.model.LoanInfo;
 import nx.domain.loan.model.LoanInfo.PaymentType;
 import nx.domain.loan.model.LoanInfo.PrepaymentType;
 import nx.domain.loan.model.LoanInfo.RateType;
+import nx.domain.loan.model.PrepaymentPlan;
 
 public class ConstantPaymentSimpleTest extends TablePrinter {
     LoanInfo loanInfo;
@@ -29,4 +33,62 @@ public class ConstantPaymentSimpleTest extends TablePrinter {
         assertEquals(84600, table.get(12).getTotal());
         assertEquals(78465, table.get(400).getBalance());
     }
+
+    @Test
+    public void testChangeRateFirstInstallment() {
+        table.changeRate(0, 0.01D);
+        ConstantPaymentSimple expected = new ConstantPaymentSimple(new LoanInfo(30000000, 35, 0, 0.01, RateType.VARIABLE,
+                PaymentType.CONSTANT_PAYMENT, PrepaymentType.DURATION));
+        assertEquals(0.01, table.get(0).getRate(), 0D);
+        assertEquals(expected.get(0).getTotal(), table.get(0).getTotal());
+        assertEquals(expected.get(418).getBalance(), table.get(418).getBalance());
+    }
+
+    @Test
+    public void testApplyEvents() {
+        table.changeRate(12, 0.01D);
+        table.prepayment(30, 500000);
+        table.changeRate(48, 0.02D);
+        table.prepayment(60, 1000000);
+        ConstantPaymentSimple batch = new ConstantPaymentSimple(loanInfo);
+        batch.apply(Arrays.asList(
+                LoanEvent.prepayment(60, 1000000),
+                LoanEvent.changeRate(48, 0.02D),
+                LoanEvent.changeRate(12, 0.01D),
+                LoanEvent.prepayment(30, 500000)));
+        assertSameTable(table, batch);
+    }
+
+    @Test
+    public void testApplyEventsReducePrincipal() {
+        LoanInfo loanInfo = new LoanInfo(30000000, 35, 0, 0.00775, RateType.VARIABLE,
+                PaymentType.CONSTANT_PAYMENT, PrepaymentType.AMOUNT);
+        ConstantPaymentSimple expected = new ConstantPaymentSimple(loanInfo);
+        expected.prepayment(24, 1000000);
+        expected.changeRate(36, 0.015D);
+        expected.prepayment(100, 2000000);
+        ConstantPaymentSimple batch = new ConstantPaymentSimple(loanInfo);
+        batch.apply(Arrays.asList(
+                LoanEvent.prepayment(100, 2000000),
+                LoanEvent.prepayment(24, 1000000),
+                LoanEvent.changeRate(36, 0.015D)));
+        assertSameTable(expected, batch);
+    }
+
+    @Test
+    public void testApplyRandomEvents() {
+        assertApplySameAsSequential(PaymentType.CONSTANT_PAYMENT, ConstantPaymentSimple::new, 0, true, true);
+    }
+
+    @Test
+    public void testApplyPlan() {
+        table.changeRate(12, 0.01D);
+        ConstantPaymentSimple expected = table.fork();
+        for (int n = 24; n < loanInfo.installments; n += 12) {
+            if (expected.get(n - 1).getBalance() > 0)
+                expected.prepayment(n, 1000000);
+        }
+        table.apply(PrepaymentPlan.every(24, 12, 1000000));
+        assertSameTable(expected, table);
+    }
 }
@@ -1,15 +1,28 @@
 package nx.domain.loan.payment;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.SortedMap;
+import java.util.SplittableRandom;
+import java.util.Spliterator;
+import java.util.TreeMap;
 
 import org.junit.Before;
 import org.junit.Test;
 
+import nx.domain.loan.model.LoanEvent;
 import nx.domain.loan.model.LoanInfo;
 import nx.domain.loan.model.LoanInfo.PaymentType;
 import nx.domain.loan.model.LoanInfo.PrepaymentType;
 import nx.domain.loan.model.LoanInfo.RateType;
 import nx.domain.loan.model.LoanResult;
+import nx.domain.loan.model.PaymentRecord;
+import nx.domain.loan.model.PrepaymentPlan;
 
 public class ConstantPaymentStandardTest extends TablePrinter {
     LoanInfo loanInfo;
@@ -136,6 +149,22 @@ public class ConstantPaymentStandardTest extends TablePrinter {
         assertEquals(0, table.get(418).getPrincipal());
     }
 
+    @Test
+    public void testPrepaymentMoreThanBalanceWithAccruedInterest() {
+        LoanInfo loanInfo = new LoanInfo(30000000, 35, 0, 0.00775, RateType.VARIABLE,
+                PaymentType.CONSTANT_PAYMENT, PrepaymentType.DURATION);
+        ConstantPaymentStandard table = new ConstantPaymentStandard(loanInfo);
+        table.changeRate(12, 0.04);
+        table.prepayment(13, 100000000);
+        PaymentRecord r = table.get(13);
+        // 未払い利息に充当した分は元金に含めない
+        assertEquals(table.get(12).getAccruedInterestBalance(), r.getAccruedInterestPaid());
+        assertEquals(table.get(12).getBalance(), r.getPrincipal());
+        assertEquals(r.getPrincipal() + r.getAccruedInterestPaid(), r.getPrepayment());
+        assertEquals(r.getPrincipal() + r.getInterest() + r.getAccruedInterestPaid(), r.getTotal());
+        assertEquals(0, r.getBalance());
+    }
+
     @Test
     public void testExcessiveInterestHike() {
         ConstantPaymentStandard table = new ConstantPaymentStandard(loanInfo);
@@ -143,4 +172,501 @@ public class ConstantPaymentStandardTest extends TablePrinter {
         LoanResult result = table.getResult();
         assertEquals(0, result.getAccruedInterestBalance());
     }
+
+    @Test
+    public void testMaxPasses() {
+        ConstantPaymentStandard table = new ConstantPaymentStandard(loanInfo);
+        assertEquals(7, table.getMaxPasses());
+        table.changeRate(24, 0.04);
+        assertTrue(table.isConverged());
+        assertEquals(0, table.get(419).getBalance());
+
+        // 残債による計算し直しをしない場合は最終回に元金が残る
+        ConstantPaymentStandard limited = new ConstantPaymentStandard(loanInfo);
+        limited.setMaxPasses(1);
+        limited.changeRate(24, 0.04);
+        assertFalse(limited.isConverged());
+        assertTrue(limited.get(419).getBalance() > 0);
+
+        limited.setMaxPasses(3);
+        limited.changeRate(24, 0.04);
+        assertTrue(limited.isConverged());
+        assertSameTable(table, limited);
+    }
+
+    @Test
+    public void testExcessiveInterestHikeNotConverged() {
+        // 5年ごとに125%まで支払月額を増やしても返済しきれない
+        ConstantPaymentStandard table = new ConstantPaymentStandard(loanInfo);
+        table.changeRate(24, 0.06);
+        assertFalse(table.isConverged());
+        assertTrue(table.get(419).getBalance() > 0);
+    }
+
+    @Test
+    public void testCalculationStatistics() {
+        CalculationStatistics statistics = CalculationStatistics.register();
+        try {
+            ConstantPaymentStandard table = new ConstantPaymentStandard(loanInfo);
+            assertEquals(0, statistics.getRecalculationCount());
+            table.changeRate(24, 0.06);
+            // 初回から420回と、360回目からの残債による再計算60回
+            assertEquals(1, statistics.getRecalculationCount());
+            assertEquals(480, statistics.getRowCount());
+            assertEquals(2, statistics.getMaxDepth());
+            assertEquals(1, statistics.getRetryCount());
+            assertEquals(6, statistics.getCapHitCount());
+            // 300回目の見直し時点から120回
+            table.changeRate(306, 0.07);
+            assertEquals(2, statistics.getRecalculationCount());
+            assertEquals(600, statistics.getRowCount());
+            assertEquals(1, statistics.getRetryCount());
+            assertTrue(statistics.getMaxTimeNanos() > 0);
+        }
+        finally {
+            CalculationStatistics.unregister();
+        }
+        assertEquals(null, ConstantPaymentStandard.getCalculationListener());
+    }
+
+    @Test
+    public void testMonthlyPaymentCache() {
+        for (int bp = 0; bp <= 1000; bp += 5) {
+            double rate = bp / 10000D;
+            for (int remaining = 1; remaining <= 600; remaining++) {
+                double monthlyRate = rate / 12.0D;
+                long expected = Math.round((double)30000000 * monthlyRate / (1.0D - (Math.pow(1.0D + monthlyRate,  -1.0D * remaining))));
+                assertEquals(expected, ConstantPaymentStandard.calculateMonthlyPayment(rate, 30000000, remaining));
+                assertEquals(expected, ConstantPaymentStandard.calculateMonthlyPayment(rate, 30000000, remaining));
+            }
+        }
+    }
+
+    @Test
+    public void testColumns() {
+        ConstantPaymentStandard table = new ConstantPaymentStandard(loanInfo);
+        PaymentRecord r = table.get(300);
+        long balances[] = table.balances();
+        long interests[] = table.interests();
+        for (int i = 0; i < table.size(); i++) {
+            assertEquals(table.get(i).getBalance(), balances[i]);
+            assertEquals(table.get(i).getInterest(), interests[i]);
+        }
+        // get()で取得したPaymentRecordは償還表の変更を反映する
+        table.prepayment(24, 1000000);
+        assertEquals(table.balances()[300], r.getBalance());
+        assertTrue(r.getBalance() < balances[300]);
+    }
+
+    @Test
+    public void testRangeResult() {
+        ConstantPaymentStandard table = new ConstantPaymentStandard(loanInfo);
+        assertRangeResult(table, 12, 24);
+        table.changeRate(24, 0.06);
+        assertRangeResult(table, 12, 24);
+        assertRangeResult(table, 60, 120);
+        table.prepayment(100, 1000000);
+        assertRangeResult(table, 12, 24);
+        assertRangeResult(table, 60, 120);
+        assertRangeResult(table, 0, table.size());
+        assertEquals(table.getResult(0, 60).getInterest() + table.getResult(60, 420).getInterest(),
+                table.getResult().getInterest());
+    }
+
+    private void assertRangeResult(final ConstantPaymentStandard table, final int from, final int to) {
+        long principal = 0, interest = 0, prepayment = 0, accruedInterestPaid = 0;
+        for (int i = from; i < to; i++) {
+            principal += table.get(i).getPrincipal();
+            interest += table.get(i).getInterest();
+            prepayment += table.get(i).getPrepayment();
+            accruedInterestPaid += table.get(i).getAccruedInterestPaid();
+        }
+        LoanResult result = table.getResult(from, to);
+        assertEquals(principal, result.getPrincipal());
+        assertEquals(interest, result.getInterest());
+        assertEquals(prepayment, result.getPrepayment());
+        assertEquals(accruedInterestPaid, result.getAccruedInterestPaid());
+        assertEquals(principal + interest + accruedInterestPaid, result.getTotal());
+        assertEquals(table.get(to - 1).getBalance(), result.getBalance());
+    }
+
+    @Test
+    public void testStream() {
+        ConstantPaymentStandard table = new ConstantPaymentStandard(loanInfo);
+        table.changeRate(24, 0.06);
+        LoanResult result = table.getResult();
+        assertEquals(table.size(), table.stream().count());
+        assertEquals(result.getInterest(), table.parallelStream().mapToLong(PaymentRecord::getInterest).sum());
+        assertEquals(result.getInterest(), table.interestStream().parallel().sum());
+        assertEquals(result.getPrincipal(), table.principalStream().parallel().sum());
+        assertEquals(result.getAccruedInterestPaid(), table.accruedInterestPaidStream().parallel().sum());
+        assertEquals(result.getBalance(), table.balanceStream().skip(419).findFirst().getAsLong());
+    }
+
+    @Test
+    public void testSpliterator() {
+        ConstantPaymentStandard table = new ConstantPaymentStandard(loanInfo);
+        Spliterator<PaymentRecord> s = table.spliterator();
+        assertTrue(s.hasCharacteristics(Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.ORDERED));
+        Spliterator<PaymentRecord> prefix = s.trySplit();
+        assertEquals(210, prefix.estimateSize());
+        assertEquals(210, s.estimateSize());
+        s.tryAdvance(r -> assertEquals(210, r.getIndex()));
+    }
+
+    @Test
+    public void testIncrementalRecalculation() {
+        ConstantPaymentStandard table = new ConstantPaymentStandard(loanInfo);
+        table.changeRate(24, 0.06);
+        table.prepayment(300, 1000000);
+        table.changeRate(250, 0.02);
+        table.changeRate(130, 0.045);
+        table.prepayment(185, 500000);
+        table.changeRate(400, 0.03);
+        assertSameAsFullRecalculation(table);
+    }
+
+    @Test
+    public void testIncrementalRecalculationDuration() {
+        LoanInfo loanInfo = new LoanInfo(30000000, 35, 0, 0.00775, RateType.VARIABLE,
+                PaymentType.CONSTANT_PAYMENT, PrepaymentType.DURATION);
+        ConstantPaymentStandard table = new ConstantPaymentStandard(loanInfo);
+        table.prepayment(36, 1000000);
+        table.changeRate(70, 0.05);
+        table.prepayment(24, 1000000);
+        table.changeRate(200, 0.01);
+        table.prepayment(380, 2000000);
+        assertSameAsFullRecalculation(table);
+    }
+
+    @Test
+    public void testIncrementalRecalculationAfterRetry() {
+        ConstantPaymentStandard table = new ConstantPaymentStandard(loanInfo);
+        table.changeRate(59, 0.045);
+        table.changeRate(306, 0.07);
+        assertSameAsFullRecalculation(table);
+    }
+
+    /**
+     * 途中からの再計算結果が初回からの再計算結果と一致することを確認
+     */
+    private void assertSameAsFullRecalculation(final ConstantPaymentStandard table) {
+        long expected[][] = new long[table.size()][];
+        for (int i = 0; i < table.size(); i++)
+            expected[i] = columns(table.get(i));
+        table.calculate(0);
+        for (int i = 0; i < table.size(); i++)
+            assertArrayEquals("row " + i, expected[i], columns(table.get(i)));
+    }
+
+    @Test
+    public void testFork() {
+        ConstantPaymentStandard base = new ConstantPaymentStandard(loanInfo);
+        base.changeRate(24, 0.02);
+        ConstantPaymentStandard before = new ConstantPaymentStandard(loanInfo);
+        before.changeRate(24, 0.02);
+
+        ConstantPaymentStandard branch1 = base.fork();
+        ConstantPaymentStandard branch2 = base.fork();
+        branch1.prepayment(300, 1000000);
+        branch2.changeRate(130, 0.045);
+        branch2.prepayment(185, 500000);
+        assertSameTable(before, base);
+
+        ConstantPaymentStandard expected1 = new ConstantPaymentStandard(loanInfo);
+        expected1.changeRate(24, 0.02);
+        expected1.prepayment(300, 1000000);
+        assertSameTable(expected1, branch1);
+        assertEquals(expected1.getResult().getTotal(), branch1.getResult().getTotal());
+
+        ConstantPaymentStandard expected2 = new ConstantPaymentStandard(loanInfo);
+        expected2.changeRate(24, 0.02);
+        expected2.changeRate(130, 0.045);
+        expected2.prepayment(185, 500000);
+        assertSameTable(expected2, branch2);
+        assertSameAsFullRecalculation(branch2);
+
+        // 複製元の変更は複製に影響しない
+        base.changeRate(48, 0.05);
+        assertSameTable(expected1, branch1);
+    }
+
+    @Test
+    public void testFreeze() {
+        ConstantPaymentStandard table = new ConstantPaymentStandard(loanInfo);
+        table.changeRate(24, 0.02);
+        AbstractPaymentTable frozen = table.freeze();
+        assertTrue(frozen.isReadOnly());
+        assertFalse(table.isReadOnly());
+        assertSame(frozen, frozen.freeze());
+
+        table.prepayment(300, 1000000);
+        ConstantPaymentStandard expected = new ConstantPaymentStandard(loanInfo);
+        expected.changeRate(24, 0.02);
+        assertSameTable(expected, frozen);
+        assertEquals(expected.getResult().getTotal(), frozen.getResult().getTotal());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testFrozenChangeRate() {
+        table.freeze().changeRate(24, 0.02);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testFrozenChangeRates() {
+        AbstractPaymentTable frozen = table.freeze();
+        frozen.changeRates(frozen.rates());
+    }
+
+    @Test
+    public void testFreezeLazy() {
+        ConstantPaymentStandard lazy = new ConstantPaymentStandard(loanInfo, true);
+        lazy.changeRate(24, 0.02);
+        AbstractPaymentTable frozen = lazy.freeze();
+        assertFalse(frozen.isLazy());
+        table.changeRate(24, 0.02);
+        assertSameTable(table, frozen);
+        assertArrayEquals(table.balances(), frozen.balances());
+        assertEquals(table.totalStream().sum(), frozen.totalStream().sum());
+        assertEquals(table.getResult(60, 120).getInterest(), frozen.getResult(60, 120).getInterest());
+        assertEquals(table.getResult(0, 0).getBalance(), frozen.getResult(0, 0).getBalance());
+    }
+
+    @Test
+    public void testApplyEvents() {
+        ConstantPaymentStandard expected = new ConstantPaymentStandard(loanInfo);
+        expected.changeRate(24, 0.01);
+        expected.changeRate(36, 0.02);
+        expected.prepayment(59, 1000000);
+        expected.changeRate(60, 0.03);
+        expected.prepayment(83, 1000000);
+        expected.changeRate(84, 0.01);
+        ConstantPaymentStandard table = new ConstantPaymentStandard(loanInfo);
+        table.apply(Arrays.asList(
+                LoanEvent.changeRate(84, 0.01),
+                LoanEvent.prepayment(59, 1000000),
+                LoanEvent.changeRate(24, 0.01),
+                LoanEvent.changeRate(60, 0.03),
+                LoanEvent.changeRate(36, 0.02),
+                LoanEvent.prepayment(83, 1000000)));
+        assertSameTable(expected, table);
+    }
+
+    @Test
+    public void testApplyRandomEvents() {
+        // 減額される繰り上げ返済は、1つずつ処理した場合と一致しないことがある
+        assertApplySameAsSequential(PaymentType.CONSTANT_PAYMENT, ConstantPaymentStandard::new, 0, true, false);
+    }
+
+    @Test
+    public void testLazy() {
+        final int count[] = new int[1];
+        ConstantPaymentStandard.setCalculationListener((info, start, rows, depth, capHits, nanos) -> count[0]++);
+        try {
+            ConstantPaymentStandard expected = new ConstantPaymentStandard(loanInfo);
+            expected.changeRate(24, 0.02);
+            expected.changeRate(130, 0.01);
+            expected.changeRate(306, 0.05);
+            count[0] = 0;
+
+            ConstantPaymentStandard table = new ConstantPaymentStandard(loanInfo, true);
+            assertTrue(table.isLazy());
+            assertEquals(expected.get(0).getBalance(), new ConstantPaymentStandard(loanInfo).get(0).getBalance());
+            table.changeRate(24, 0.02);
+            table.changeRate(130, 0.01);
+            table.changeRate(306, 0.05);
+            // 条件変更より前の回の参照では再計算しない
+            assertEquals(expected.get(23).getBalance(), table.get(23).getBalance());
+            assertEquals(expected.getResult(0, 24).getTotal(), table.getResult(0, 24).getTotal());
+            assertEquals(0, count[0]);
+            // 3回の条件変更をまとめて1回で再計算
+            assertEquals(expected.get(24).getBalance(), table.get(24).getBalance());
+            assertEquals(1, count[0]);
+            assertSameTable(expected, table);
+            assertEquals(1, count[0]);
+            assertEquals(expected.getResult().getTotal(), table.getResult().getTotal());
+            assertEquals(expected.isConverged(), table.isConverged());
+
+            // 繰り上げ返済は繰上額の減額を遅延計算しない場合と同じ時点で行うため、すぐに再計算する
+            table.prepayment(200, 1000000);
+            assertEquals(2, count[0]);
+            // 再計算する範囲に繰り上げ返済がある利率変更もすぐに再計算する
+            table.changeRate(180, 0.03);
+            assertEquals(3, count[0]);
+            // 繰り上げ返済より後の利率変更は再計算しない
+            table.changeRate(300, 0.04);
+            assertEquals(3, count[0]);
+        }
+        finally {
+            ConstantPaymentStandard.setCalculationListener(null);
+        }
+    }
+
+    @Test
+    public void testLazyParallelStream() {
+        ConstantPaymentStandard expected = new ConstantPaymentStandard(loanInfo);
+        expected.changeRate(30, 0.02);
+        final long interest = expected.getResult().getInterest();
+        for (int i = 0; i < 200; i++) {
+            ConstantPaymentStandard table = new ConstantPaymentStandard(loanInfo, true);
+            table.changeRate(30, 0.02);
+            // 未計算の返済回を複数のスレッドから同時に参照する
+            assertEquals(interest, table.parallelStream().mapToLong(PaymentRecord::getInterest).sum());
+        }
+    }
+
+    @Test
+    public void testLazyPrepaymentMoreThanBalance() {
+        LoanInfo loanInfo = new LoanInfo(30000000, 35, 0, 0.01, RateType.VARIABLE,
+                PaymentType.CONSTANT_PAYMENT, PrepaymentType.DURATION);
+        ConstantPaymentStandard expected = new ConstantPaymentStandard(loanInfo);
+        ConstantPaymentStandard table = new ConstantPaymentStandard(loanInfo, true);
+        for (ConstantPaymentStandard t : Arrays.asList(expected, table)) {
+            t.prepayment(300, 100000000);
+            t.changeRate(10, 0.05);
+        }
+        // 繰上額は繰り上げ返済の時点の残高までに減額し、その後に残高が増えても減額した額のまま再計算する
+        assertEquals(9666767, expected.get(300).getPrepayment());
+        assertEquals(13539970, expected.get(300).getBalance());
+        assertSameTable(expected, table);
+    }
+
+    @Test
+    public void testLazyRandomEdits() {
+        final SplittableRandom random = new SplittableRandom(19L);
+        for (int k = 0; k < 200; k++) {
+            LoanInfo loanInfo = new LoanInfo(30000000, 35, 0, 0.01, RateType.VARIABLE, PaymentType.CONSTANT_PAYMENT,
+                    random.nextBoolean() ? PrepaymentType.AMOUNT : PrepaymentType.DURATION);
+            ConstantPaymentStandard expected = new ConstantPaymentStandard(loanInfo);
+            ConstantPaymentStandard table = new ConstantPaymentStandard(loanInfo, true);
+            for (int edit = random.nextInt(1, 8); edit > 0; edit--) {
+                final int n = random.nextInt(loanInfo.installments);
+                if (random.nextBoolean()) {
+                    final long amount = random.nextLong(1, 40000000);
+                    expected.prepayment(n, amount);
+                    table.prepayment(n, amount);
+                }
+                else {
+                    final double rate = random.nextInt(0, 80) / 1000D;
+                    expected.changeRate(n, rate);
+                    table.changeRate(n, rate);
+                }
+                // 途中の回を参照して一部だけ計算した状態からも同じになる
+                if (random.nextInt(3) == 0)
+                    table.get(random.nextInt(loanInfo.installments));
+            }
+            assertSameTable(expected, table);
+        }
+    }
+
+    @Test
+    public void testLazyFork() {
+        ConstantPaymentStandard table = new ConstantPaymentStandard(loanInfo, true);
+        table.get(11);
+        table.changeRate(60, 0.03);
+        ConstantPaymentStandard branch = table.fork();
+        assertTrue(branch.isLazy());
+        branch.prepayment(200, 2000000);
+
+        ConstantPaymentStandard expected = new ConstantPaymentStandard(loanInfo);
+        expected.changeRate(60, 0.03);
+        assertSameTable(expected, table);
+        expected.prepayment(200, 2000000);
+        assertSameTable(expected, branch);
+        assertSameTable(expected, branch.freeze());
+    }
+
+    @Test
+    public void testCheckpointInterval() {
+        final int rows[] = new int[1];
+        ConstantPaymentStandard.setCalculationListener((info, start, n, depth, capHits, nanos) -> rows[0] = n);
+        try {
+            ConstantPaymentStandard expected = new ConstantPaymentStandard(loanInfo);
+            expected.changeRate(24, 0.02);
+            expected.changeRate(170, 0.03);
+            // 120回目の見直し時点から
+            assertEquals(300, rows[0]);
+
+            ConstantPaymentStandard table = new ConstantPaymentStandard(loanInfo);
+            table.setCheckpointInterval(12);
+            assertEquals(12, table.getCheckpointInterval());
+            table.changeRate(24, 0.02);
+            table.changeRate(170, 0.03);
+            // 168回目のチェックポイントから
+            assertEquals(252, rows[0]);
+            assertSameTable(expected, table);
+            assertSameAsFullRecalculation(table);
+
+            ConstantPaymentStandard branch = table.fork();
+            branch.prepayment(200, 1000000);
+            assertEquals(228, rows[0]);
+            expected.prepayment(200, 1000000);
+            assertSameTable(expected, branch);
+        }
+        finally {
+            ConstantPaymentStandard.setCalculationListener(null);
+        }
+    }
+
+    @Test
+    public void testChangeRates() {
+        double rates[] = new double[loanInfo.installments];
+        Arrays.fill(rates, loanInfo.annualRate);
+        for (int i = 24; i < rates.length; i++)
+            rates[i] = 0.01 + (i / 12) * 0.0005;
+        ConstantPaymentStandard expected = new ConstantPaymentStandard(loanInfo);
+        for (int i = 24; i < rates.length; i += 12)
+            expected.changeRate(i, rates[i]);
+        table.changeRates(rates);
+        assertSameTable(expected, table);
+        assertEquals(expected.getHistory().size(), table.getHistory().size());
+
+        // 同じ利率であれば何もしない
+        table.changeRates(rates);
+        assertEquals(expected.getHistory().size(), table.getHistory().size());
+    }
+
+    @Test
+    public void testChangeRatesTimeline() {
+        SortedMap<Integer, Double> timeline = new TreeMap<Integer, Double>();
+        timeline.put(120, 0.02);
+        timeline.put(60, 0.015);
+        timeline.put(180, 0.01);
+        ConstantPaymentStandard expected = new ConstantPaymentStandard(loanInfo);
+        expected.changeRate(60, 0.015);
+        expected.changeRate(120, 0.02);
+        expected.changeRate(180, 0.01);
+        table.changeRates(timeline);
+        assertSameTable(expected, table);
+        assertEquals(loanInfo.annualRate, table.get(59).getRate(), 0D);
+    }
+
+    @Test
+    public void testApplyPlan() {
+        // 1年ごとに50万円と、5年目から半年ごとに残高の5%
+        PrepaymentPlan plan = PrepaymentPlan.every(11, 12, 500000)
+                .and(PrepaymentPlan.percentOfBalance(59, 6, 0.05));
+        ConstantPaymentStandard expected = new ConstantPaymentStandard(loanInfo);
+        for (int n = 0; n < loanInfo.installments; n++) {
+            long balance = (n == 0) ? loanInfo.amount : expected.get(n - 1).getBalance();
+            if (balance > 0 && plan.getAmount(n, balance) > 0)
+                expected.prepayment(n, plan.getAmount(n, balance));
+        }
+        table.apply(plan);
+        assertSameTable(expected, table);
+        assertEquals(0, table.get(loanInfo.installments - 1).getBalance());
+
+        // 記録した変更履歴で同じ償還表になる
+        ConstantPaymentStandard replay = new ConstantPaymentStandard(loanInfo);
+        replay.apply(table.getHistory());
+        assertSameTable(table, replay);
+        assertEquals(expected.getHistory().size(), table.getHistory().size());
+    }
+
+    @Test
+    public void testPlanToString() {
+        assertEquals("[12回 500000]", PrepaymentPlan.once(12, 500000).toString());
+        assertEquals("[11回から47回まで12回ごと 500000]", PrepaymentPlan.every(11, 12, 4, 500000).toString());
+        assertEquals("[11回から12回ごと完済まで 500000]", PrepaymentPlan.every(11, 12, 500000).toString());
+    }
 }
@@ -1,14 +1,21 @@
 package nx.domain.loan.payment;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
 
 import org.junit.Before;
 import org.junit.Test;
 
+import nx.domain.loan.model.LoanEvent;
 import nx.domain.loan.model.LoanInfo;
 import nx.domain.loan.model.LoanInfo.PaymentType;
 import nx.domain.loan.model.LoanInfo.PrepaymentType;
 import nx.domain.loan.model.LoanInfo.RateType;
+import nx.domain.loan.model.PrepaymentPlan;
 
 public class EqualPrincipalPaymentTableTest extends TablePrinter {
     LoanInfo loanInfo;
@@ -128,4 +135,122 @@ public class EqualPrincipalPaymentTableTest extends TablePrinter {
         assertEquals(214245, table.get(417).getTotal());
         assertEquals(0, table.get(418).getPrincipal());
     }
+
+    @Test
+    public void testApplyEvents() {
+        EqualPrincipalPayment expected = new EqualPrincipalPayment(loanInfo);
+        expected.changeRate(12, 0.01D);
+        expected.prepayment(24, 1000000);
+        expected.changeRate(30, 0.02D);
+        expected.prepayment(36, 1000000);
+        EqualPrincipalPayment table = new EqualPrincipalPayment(loanInfo);
+        table.apply(Arrays.asList(
+                LoanEvent.prepayment(36, 1000000),
+                LoanEvent.changeRate(30, 0.02D),
+                LoanEvent.prepayment(24, 1000000),
+                LoanEvent.changeRate(12, 0.01D)));
+        assertSameTable(expected, table);
+    }
+
+    @Test
+    public void testFork() {
+        EqualPrincipalPayment branch = table.fork();
+        branch.prepayment(100, 1000000);
+        branch.changeRate(120, 0.02D);
+        assertSameTable(new EqualPrincipalPayment(loanInfo), table);
+
+        EqualPrincipalPayment expected = new EqualPrincipalPayment(loanInfo);
+        expected.prepayment(100, 1000000);
+        expected.changeRate(120, 0.02D);
+        assertSameTable(expected, branch);
+    }
+
+    @Test
+    public void testApplyEventsDuration() {
+        LoanInfo loan = new LoanInfo(30000000, 35, 0, 0.00775, RateType.VARIABLE,
+                PaymentType.EQUAL_PRINCIPAL_PAYMENT, PrepaymentType.DURATION);
+        EqualPrincipalPayment expected = new EqualPrincipalPayment(loan);
+        expected.prepayment(24, 1000000);
+        expected.changeRate(30, 0.02D);
+        expected.prepayment(36, 1000000);
+        EqualPrincipalPayment table = new EqualPrincipalPayment(loan);
+        table.apply(Arrays.asList(
+                LoanEvent.prepayment(36, 1000000),
+                LoanEvent.prepayment(24, 1000000),
+                LoanEvent.changeRate(30, 0.02D)));
+        assertSameTable(expected, table);
+    }
+
+    @Test
+    public void testApplyRandomEvents() {
+        // 同じ返済回の複数の繰り上げ返済は、1つずつ処理した場合と一致しない
+        assertApplySameAsSequential(PaymentType.EQUAL_PRINCIPAL_PAYMENT, EqualPrincipalPayment::new, 0, false, true);
+    }
+
+    @Test
+    public void testLazy() {
+        EqualPrincipalPayment lazy = new EqualPrincipalPayment(loanInfo, true);
+        assertEquals(table.get(0).getTotal(), lazy.get(0).getTotal());
+        assertEquals(table.getResult(0, 12).getTotal(), lazy.getResult(0, 12).getTotal());
+        lazy.prepayment(100, 1000000);
+        lazy.changeRate(120, 0.02D);
+        table.prepayment(100, 1000000);
+        table.changeRate(120, 0.02D);
+        assertSameTable(table, lazy);
+    }
+
+    @Test
+    public void testVirtual() {
+        EqualPrincipalPayment virtual = EqualPrincipalPayment.createVirtual(loanInfo);
+        assertTrue(virtual.isVirtual());
+        assertSameTable(table, virtual);
+        assertEquals(table.getResult().getTotal(), virtual.getResult().getTotal());
+        assertEquals(table.getResult(100, 420).getPrincipal(), virtual.getResult(100, 420).getPrincipal());
+        assertEquals(table.getResult(12, 24).getInterest(), virtual.getResult(12, 24).getInterest());
+        assertEquals(table.getResult(0, 0).getBalance(), virtual.getResult(0, 0).getBalance());
+        assertArrayEquals(table.interests(), virtual.interests());
+
+        EqualPrincipalPayment fork = virtual.fork();
+        AbstractPaymentTable frozen = virtual.freeze();
+        virtual.prepayment(100, 1000000);
+        virtual.changeRate(120, 0.02D);
+        assertFalse(virtual.isVirtual());
+        assertTrue(fork.isVirtual());
+        assertSameTable(fork, frozen);
+        table.prepayment(100, 1000000);
+        table.changeRate(120, 0.02D);
+        assertSameTable(table, virtual);
+        assertEquals(table.getResult().getTotal(), virtual.getResult().getTotal());
+    }
+
+    @Test
+    public void testChangeRates() {
+        double rates[] = table.rates();
+        for (int i = 36; i < rates.length; i++)
+            rates[i] = (i < 120) ? 0.012 : 0.018;
+        EqualPrincipalPayment expected = new EqualPrincipalPayment(loanInfo);
+        expected.prepayment(12, 1000000);
+        expected.changeRate(36, 0.012);
+        expected.changeRate(120, 0.018);
+        EqualPrincipalPayment virtual = EqualPrincipalPayment.createVirtual(loanInfo);
+        virtual.prepayment(12, 1000000);
+        virtual.changeRates(rates);
+        assertSameTable(expected, virtual);
+    }
+
+    @Test
+    public void testApplyPlan() {
+        PrepaymentPlan plan = PrepaymentPlan.percentOfBalance(12, 12, 0.1)
+                .and(PrepaymentPlan.once(30, 2000000));
+        for (int n = 0; n < loanInfo.installments; n++) {
+            long balance = (n == 0) ? loanInfo.amount : table.get(n - 1).getBalance();
+            if (balance > 0 && plan.getAmount(n, balance) > 0)
+                table.prepayment(n, plan.getAmount(n, balance));
+        }
+        EqualPrincipalPayment virtual = EqualPrincipalPayment.createVirtual(loanInfo);
+        virtual.apply(plan);
+        assertSameTable(table, virtual);
+        assertEquals(2000000, virtual.get(30).getPrepayment());
+        assertEquals(Math.round(virtual.get(23).getBalance() * 0.1), virtual.get(24).getPrepayment());
+    }
 }
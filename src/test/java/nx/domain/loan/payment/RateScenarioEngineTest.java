@@ -0,0 +1,107 @@
+package nx.domain.loan.payment;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import nx.domain.loan.model.LoanEvent;
+import nx.domain.loan.model.LoanInfo;
+import nx.domain.loan.model.LoanInfo.PaymentType;
+import nx.domain.loan.model.LoanInfo.PrepaymentType;
+import nx.domain.loan.model.LoanInfo.RateType;
+import nx.domain.loan.model.PaymentRecord;
+
+public class RateScenarioEngineTest {
+    private RateScenarioEngine engine;
+    private LoanInfo loanInfo;
+
+    /**
+     * 半年ごとに利率が上下する
+     */
+    private final RatePathGenerator randomWalk = new RatePathGenerator() {
+        @Override
+        public void generate(final int path, final SplittableRandom random, final double rates[]) {
+            double rate = loanInfo.annualRate;
+            for (int i = 0; i < rates.length; i++) {
+                if (i > 0 && i % 6 == 0)
+                    rate = Math.max(0D, rate + (random.nextDouble() - 0.4D) * 0.003D);
+                rates[i] = rate;
+            }
+        }
+    };
+
+    @Before
+    public void prepare() {
+        engine = new RateScenarioEngine();
+        loanInfo = new LoanInfo(30000000, 35, 0, 0.005, RateType.VARIABLE,
+                PaymentType.CONSTANT_PAYMENT, PrepaymentType.DURATION);
+    }
+
+    @After
+    public void cleanup() {
+        engine.shutdown();
+    }
+
+    @Test
+    public void testSameAsRateChanges() {
+        ScenarioResult result = engine.run(loanInfo, randomWalk, 50, 1L);
+        assertEquals(50, result.size());
+        for (int path = 0; path < result.size(); path++) {
+            double rates[] = new double[loanInfo.installments];
+            randomWalk.generate(path, new SplittableRandom(1L + path), rates);
+            List<LoanEvent> events = new ArrayList<LoanEvent>();
+            for (int i = 0; i < rates.length; i++) {
+                if (rates[i] != ((i == 0) ? loanInfo.annualRate : rates[i - 1]))
+                    events.add(LoanEvent.changeRate(i, rates[i]));
+            }
+            ConstantPaymentStandard table = new ConstantPaymentStandard(loanInfo);
+            table.apply(events);
+
+            long interest = 0, max = 0;
+            for (PaymentRecord r : table) {
+                interest += r.getInterest() + r.getAccruedInterestPaid();
+                max = Math.max(max, r.getTotal());
+            }
+            assertEquals(interest, result.getTotalInterest().get(path));
+            assertEquals(max, result.getMaxPayment().get(path));
+            assertEquals(table.get(rates.length - 1).getAccruedInterestBalance(), result.getAccruedInterestBalance().get(path));
+        }
+    }
+
+    @Test
+    public void testCapHits() {
+        // 6年目から8%になると、以後の見直しのたびに125%で制限される
+        ScenarioResult result = engine.run(loanInfo, new RatePathGenerator() {
+            @Override
+            public void generate(final int path, final SplittableRandom random, final double rates[]) {
+                for (int i = 0; i < rates.length; i++)
+                    rates[i] = (i < 60) ? 0.005 : 0.08;
+            }
+        }, 3, 0L);
+        assertEquals(6, result.getCapHits().get(0));
+        assertEquals(1.0D, result.getCapBindingRatio(), 0D);
+        assertEquals(6, result.getCapHits().getPercentile(0.5));
+    }
+
+    @Test
+    public void testIndependentOfParallelism() {
+        ScenarioResult expected = engine.run(loanInfo, randomWalk, 200, 7L);
+        RateScenarioEngine single = new RateScenarioEngine(new ForkJoinPool(1));
+        try {
+            ScenarioResult actual = single.run(loanInfo, randomWalk, 200, 7L);
+            for (int path = 0; path < expected.size(); path++)
+                assertEquals(expected.getTotalInterest().get(path), actual.getTotalInterest().get(path));
+            assertEquals(expected.getTotalInterest().getMean(), actual.getTotalInterest().getMean(), 0D);
+        }
+        finally {
+            single.shutdown();
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package nx.domain.loan.payment;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import nx.domain.loan.model.LoanInfo;
+import nx.domain.loan.model.LoanInfo.PaymentType;
+import nx.domain.loan.model.LoanInfo.PrepaymentType;
+import nx.domain.loan.model.LoanInfo.RateType;
+
+public class ScheduleCacheTest extends TablePrinter {
+    private LoanInfo loan(final double rate) {
+        return new LoanInfo(30000000, 35, 0, rate, RateType.VARIABLE,
+                PaymentType.CONSTANT_PAYMENT, PrepaymentType.AMOUNT);
+    }
+
+    @Test
+    public void testLoanInfoEquality() {
+        assertEquals(loan(0.01), loan(0.01));
+        assertEquals(loan(0.01).hashCode(), loan(0.01).hashCode());
+        assertNotEquals(loan(0.01), loan(0.011));
+        assertNotEquals(loan(0.01), new LoanInfo(30000000, 35, 0, 0.01, RateType.VARIABLE,
+                PaymentType.EQUAL_PRINCIPAL_PAYMENT, PrepaymentType.AMOUNT));
+    }
+
+    @Test
+    public void testHitAndMiss() {
+        ScheduleCache cache = new ScheduleCache(10);
+        AbstractPaymentTable table = cache.get(loan(0.01));
+        assertSame(table, cache.get(loan(0.01)));
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getHitCount());
+        assertSameTable(new ConstantPaymentStandard(loan(0.01)), table);
+    }
+
+    @Test
+    public void testEviction() {
+        ScheduleCache cache = new ScheduleCache(2);
+        AbstractPaymentTable table1 = cache.get(loan(0.01));
+        cache.get(loan(0.02));
+        cache.get(loan(0.01));
+        cache.get(loan(0.03)); // 最も長く参照されていない2%が削除される
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+        assertSame(table1, cache.get(loan(0.01)));
+        assertNotSame(table1, cache.get(loan(0.02)));
+        assertEquals(4, cache.getMissCount());
+    }
+
+    @Test
+    public void testFork() {
+        ScheduleCache cache = new ScheduleCache(1);
+        AbstractPaymentTable branch = cache.get(loan(0.01)).fork();
+        branch.prepayment(10, 1000000);
+        assertSameTable(new ConstantPaymentStandard(loan(0.01)), cache.get(loan(0.01)));
+
+        ConstantPaymentStandard expected = new ConstantPaymentStandard(loan(0.01));
+        expected.prepayment(10, 1000000);
+        assertSameTable(expected, branch);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testReadOnlyPrepayment() {
+        new ScheduleCache(1).get(loan(0.01)).prepayment(10, 1000000);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testReadOnlyRecord() {
+        new ScheduleCache(1).get(loan(0.01)).get(10).setPrincipal(0);
+    }
+}
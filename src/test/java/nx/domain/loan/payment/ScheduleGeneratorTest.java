@@ -0,0 +1,56 @@
+package nx.domain.loan.payment;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import nx.domain.loan.model.LoanInfo;
+import nx.domain.loan.model.LoanInfo.PaymentType;
+import nx.domain.loan.model.LoanInfo.PrepaymentType;
+import nx.domain.loan.model.LoanInfo.RateType;
+import nx.domain.loan.model.LoanResult;
+import nx.domain.loan.model.PaymentRecord;
+
+public class ScheduleGeneratorTest extends TablePrinter {
+    @Test
+    public void testConstantPayment() {
+        LoanInfo loanInfo = new LoanInfo(30000000, 35, 0, 0.00775, RateType.VARIABLE,
+                PaymentType.CONSTANT_PAYMENT, PrepaymentType.AMOUNT);
+        assertSameAsTable(loanInfo, new ConstantPaymentStandard(loanInfo));
+    }
+
+    @Test
+    public void testEqualPrincipalPayment() {
+        LoanInfo loanInfo = new LoanInfo(30000000, 35, 0, 0.00775, RateType.VARIABLE,
+                PaymentType.EQUAL_PRINCIPAL_PAYMENT, PrepaymentType.AMOUNT);
+        assertSameAsTable(loanInfo, new EqualPrincipalPayment(loanInfo));
+    }
+
+    @Test
+    public void testFirstRecord() {
+        LoanInfo loanInfo = new LoanInfo(30000000, 35, 0, 0.00775, RateType.VARIABLE,
+                PaymentType.CONSTANT_PAYMENT, PrepaymentType.AMOUNT);
+        ScheduleGenerator generator = new ScheduleGenerator(loanInfo);
+        PaymentRecord r = generator.next();
+        assertEquals(81576, r.getTotal());
+        assertSame(r, generator.next());
+        assertEquals(1, r.getIndex());
+    }
+
+    private void assertSameAsTable(final LoanInfo loanInfo, final AbstractPaymentTable table) {
+        ScheduleGenerator generator = new ScheduleGenerator(loanInfo);
+        for (int i = 0; i < table.size(); i++)
+            assertArrayEquals("row " + i, columns(table.get(i)), columns(generator.next()));
+        assertFalse(generator.hasNext());
+
+        LoanResult expected = table.getResult();
+        LoanResult result = ScheduleGenerator.summarize(loanInfo);
+        assertEquals(expected.getPrincipal(), result.getPrincipal());
+        assertEquals(expected.getInterest(), result.getInterest());
+        assertEquals(expected.getTotal(), result.getTotal());
+        assertEquals(expected.getBalance(), result.getBalance());
+    }
+}
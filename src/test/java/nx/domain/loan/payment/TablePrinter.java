@@ -1,14 +1,26 @@
 package nx.domain.loan.payment;
 
+import static org.junit.Assert.assertArrayEquals;
+
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.function.Function;
 
 import org.junit.Rule;
 import org.junit.rules.TestName;
 
+import nx.domain.loan.model.LoanEvent;
 import nx.domain.loan.model.LoanInfo;
 import nx.domain.loan.model.LoanInfo.PaymentType;
+import nx.domain.loan.model.LoanInfo.PrepaymentType;
+import nx.domain.loan.model.LoanInfo.RateType;
 import nx.domain.loan.model.LoanResult;
 import nx.domain.loan.model.PaymentRecord;
 
@@ -102,4 +114,78 @@ public abstract class TablePrinter {
                     r.getTotal(), r.getBalance(), r.getPrepayment(), r.getAccruedInterestNew(), r.getAccruedInterestBalance());
         }
     }
+
+    /**
+     * 2つの償還表の全項目が一致することを確認
+     */
+    protected void assertSameTable(final AbstractPaymentTable expected, final AbstractPaymentTable actual) {
+        for (int i = 0; i < expected.size(); i++)
+            assertArrayEquals("row " + i, columns(expected.get(i)), columns(actual.get(i)));
+    }
+
+    /**
+     * 乱数で作成した条件変更を、返済回の順にprepayment()やchangeRate()で1つずつ処理した償還表と、
+     * apply()でまとめて処理した償還表が一致することを確認<br>
+     * 条件変更は近い返済回に集めて、同じ返済回の繰り上げ返済と利率変更や、元金残高を超える繰り上げ返済を含める
+     *
+     * @param paymentType 返済方法
+     * @param factory 償還表を作成する
+     * @param first 条件変更を行う最初の返済回
+     * @param repeatPrepayment 同じ返済回に複数の繰り上げ返済を含める場合はtrue
+     * @param reducedPrepayment 1つずつ処理したときに繰上額が減額される場合も比較する場合はtrue
+     */
+    protected void assertApplySameAsSequential(final PaymentType paymentType,
+            final Function<LoanInfo, AbstractPaymentTable> factory, final int first,
+            final boolean repeatPrepayment, final boolean reducedPrepayment) {
+        final SplittableRandom random = new SplittableRandom(2L);
+        for (int k = 0; k < 300; k++) {
+            final LoanInfo loanInfo = new LoanInfo(30000000, 35, 0, 0.01, RateType.VARIABLE, paymentType,
+                    random.nextBoolean() ? PrepaymentType.AMOUNT : PrepaymentType.DURATION);
+            final List<LoanEvent> events = new ArrayList<LoanEvent>();
+            final Set<Integer> prepaid = new HashSet<Integer>();
+            final int base = random.nextInt(first, loanInfo.installments - 4);
+            for (int count = random.nextInt(1, 8); count > 0; count--) {
+                final int n = base + random.nextInt(4);
+                if (random.nextBoolean() && (prepaid.add(n) || repeatPrepayment))
+                    events.add(LoanEvent.prepayment(n, random.nextLong(1, random.nextBoolean() ? 3000000 : 40000000)));
+                else
+                    events.add(LoanEvent.changeRate(n, random.nextInt(0, 80) / 1000D));
+            }
+            final AbstractPaymentTable expected = factory.apply(loanInfo);
+            final List<LoanEvent> sorted = new ArrayList<LoanEvent>(events);
+            Collections.sort(sorted, (e1, e2) -> Integer.compare(e1.index, e2.index));
+            for (LoanEvent e : sorted) {
+                if (e.type == LoanEvent.Type.PREPAYMENT)
+                    expected.prepayment(e.index, e.amount);
+                else
+                    expected.changeRate(e.index, e.rate);
+            }
+            if (!reducedPrepayment && reduced(expected, sorted))
+                continue;
+            final AbstractPaymentTable actual = factory.apply(loanInfo);
+            actual.apply(events);
+            assertSameTable(expected, actual);
+        }
+    }
+
+    /**
+     * 返済回の順に処理した繰り上げ返済のいずれかが減額されていればtrue
+     */
+    private static boolean reduced(final AbstractPaymentTable table, final List<LoanEvent> sorted) {
+        for (int i = 0; i < sorted.size(); i++) {
+            final LoanEvent e = sorted.get(i);
+            // 同じ返済回では最後の繰り上げ返済の額が残る
+            if (e.type != LoanEvent.Type.PREPAYMENT || (i + 1 < sorted.size() && sorted.get(i + 1).index == e.index))
+                continue;
+            if (table.get(e.index).getPrepayment() < e.amount)
+                return true;
+        }
+        return false;
+    }
+
+    protected long[] columns(final PaymentRecord r) {
+        return new long[] { Double.doubleToLongBits(r.getRate()), r.getPrincipal(), r.getInterest(),
+                r.getTotal(), r.getBalance(), r.getPrepayment(), r.getAccruedInterestNew(),
+                r.getAccruedInterestPaid(), r.getAccruedInterestBalance() };
+    }
 }
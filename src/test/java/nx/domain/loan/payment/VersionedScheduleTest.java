@@ -0,0 +1,117 @@
+package nx.domain.loan.payment;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import nx.domain.loan.model.LoanInfo;
+import nx.domain.loan.model.LoanInfo.PaymentType;
+import nx.domain.loan.model.LoanInfo.PrepaymentType;
+import nx.domain.loan.model.LoanInfo.RateType;
+import nx.domain.loan.model.PaymentRecord;
+
+public class VersionedScheduleTest extends TablePrinter {
+    private final LoanInfo loanInfo = new LoanInfo(30000000, 35, 0, 0.00775, RateType.VARIABLE,
+            PaymentType.CONSTANT_PAYMENT, PrepaymentType.AMOUNT);
+
+    @Test
+    public void testUpdate() {
+        VersionedSchedule schedule = new VersionedSchedule(loanInfo);
+        AbstractPaymentTable first = schedule.snapshot();
+        assertTrue(first.isReadOnly());
+        assertEquals(0, schedule.getVersion());
+
+        AbstractPaymentTable second = schedule.prepayment(100, 1000000);
+        assertEquals(1, schedule.getVersion());
+        assertNotSame(first, second);
+        assertTrue(second.isReadOnly());
+        assertSameTable(new ConstantPaymentStandard(loanInfo), first);
+
+        schedule.changeRate(200, 0.02);
+        ConstantPaymentStandard expected = new ConstantPaymentStandard(loanInfo);
+        expected.prepayment(100, 1000000);
+        expected.changeRate(200, 0.02);
+        assertSameTable(expected, schedule.snapshot());
+        assertEquals(2, schedule.getVersion());
+    }
+
+    @Test
+    public void testFailedUpdate() {
+        VersionedSchedule schedule = new VersionedSchedule(loanInfo);
+        AbstractPaymentTable first = schedule.snapshot();
+        try {
+            schedule.prepayment(420, 1000000);
+        }
+        catch (IllegalArgumentException e) {
+        }
+        assertEquals(0, schedule.getVersion());
+        assertSame(first, schedule.snapshot());
+    }
+
+    /**
+     * 変更中に参照しても、いずれかの版の一貫した償還表が得られることを確認
+     */
+    @Test
+    public void testConcurrentReaders() throws InterruptedException {
+        final VersionedSchedule schedule = new VersionedSchedule(loanInfo);
+        final AtomicBoolean done = new AtomicBoolean();
+        final AtomicInteger errors = new AtomicInteger();
+        final List<Thread> readers = new ArrayList<Thread>();
+        for (int t = 0; t < 4; t++) {
+            Thread reader = new Thread(() -> {
+                while (!done.get()) {
+                    AbstractPaymentTable table = schedule.snapshot();
+                    long principal = 0;
+                    for (PaymentRecord r : table)
+                        principal += r.getPrincipal();
+                    if (principal != loanInfo.amount || principal != table.getResult().getPrincipal())
+                        errors.incrementAndGet();
+                }
+            });
+            readers.add(reader);
+            reader.start();
+        }
+        for (int i = 1; i <= 200; i++)
+            schedule.prepayment(i, 10000);
+        done.set(true);
+        for (Thread reader : readers)
+            reader.join();
+        assertEquals(0, errors.get());
+        assertEquals(200, schedule.getVersion());
+    }
+
+    @Test
+    public void testRevert() {
+        VersionedSchedule schedule = new VersionedSchedule(new ConstantPaymentStandard(loanInfo), 2);
+        schedule.changeRate(60, 0.02);
+        AbstractPaymentTable second = schedule.snapshot();
+        schedule.prepayment(100, 1000000);
+        schedule.prepayment(200, 1000000);
+        assertEquals(3, schedule.getVersion());
+        assertSame(second, schedule.snapshot(1));
+        // 保持する数を超えた版は参照できない
+        try {
+            schedule.snapshot(0);
+            fail();
+        }
+        catch (IllegalArgumentException e) {
+        }
+
+        assertSame(second, schedule.revert(1));
+        assertEquals(4, schedule.getVersion());
+        schedule.changeRate(120, 0.03);
+        ConstantPaymentStandard expected = new ConstantPaymentStandard(loanInfo);
+        expected.changeRate(60, 0.02);
+        expected.changeRate(120, 0.03);
+        assertSameTable(expected, schedule.snapshot());
+    }
+}
@@ -0,0 +1,186 @@
+package nx.domain.loan.portfolio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import nx.domain.loan.model.LoanEvent;
+import nx.domain.loan.model.LoanInfo;
+import nx.domain.loan.model.LoanInfo.PaymentType;
+import nx.domain.loan.model.LoanInfo.PrepaymentType;
+import nx.domain.loan.model.LoanInfo.RateType;
+import nx.domain.loan.model.LoanResult;
+import nx.domain.loan.payment.AbstractPaymentTable;
+import nx.domain.loan.payment.ConstantPaymentSimple;
+
+public class PortfolioEngineTest {
+    private PortfolioEngine engine;
+    private List<LoanInfo> loans;
+    private List<List<LoanEvent>> events;
+
+    @Before
+    public void prepare() {
+        engine = new PortfolioEngine();
+        loans = new ArrayList<LoanInfo>();
+        events = new ArrayList<List<LoanEvent>>();
+        for (int i = 0; i < 500; i++) {
+            PaymentType paymentType = (i % 2 == 0) ? PaymentType.CONSTANT_PAYMENT : PaymentType.EQUAL_PRINCIPAL_PAYMENT;
+            loans.add(new LoanInfo(10000000 + i * 10000, 10 + i % 26, 0, 0.005 + (i % 7) * 0.001,
+                    RateType.VARIABLE, paymentType, PrepaymentType.AMOUNT));
+            if (i % 3 == 0)
+                events.add(Arrays.asList(LoanEvent.changeRate(24, 0.02), LoanEvent.prepayment(36, 500000)));
+            else
+                events.add(null);
+        }
+    }
+
+    @After
+    public void cleanup() {
+        engine.shutdown();
+    }
+
+    @Test
+    public void testSummarize() {
+        LoanResult results[] = engine.summarize(loans, events);
+        assertEquals(loans.size(), results.length);
+        for (int i = 0; i < loans.size(); i++) {
+            AbstractPaymentTable table = AbstractPaymentTable.create(loans.get(i));
+            if (events.get(i) != null)
+                table.apply(events.get(i));
+            LoanResult expected = table.getResult();
+            assertEquals(expected.getTotal(), results[i].getTotal());
+            assertEquals(expected.getInterest(), results[i].getInterest());
+            assertEquals(expected.getBalance(), results[i].getBalance());
+        }
+    }
+
+    @Test
+    public void testEachLoanConsumedOnce() {
+        final AtomicIntegerArray count = new AtomicIntegerArray(loans.size());
+        engine.build(loans, null, new ScheduleConsumer() {
+            @Override
+            public void accept(final int index, final AbstractPaymentTable table) {
+                assertEquals(loans.get(index).installments, table.size());
+                count.incrementAndGet(index);
+            }
+        });
+        for (int i = 0; i < loans.size(); i++)
+            assertEquals(1, count.get(i));
+    }
+
+    @Test
+    public void testResetRates() {
+        List<AbstractPaymentTable> tables = new ArrayList<AbstractPaymentTable>();
+        List<AbstractPaymentTable> expected = new ArrayList<AbstractPaymentTable>();
+        for (LoanInfo loanInfo : loans) {
+            tables.add(AbstractPaymentTable.create(loanInfo));
+            expected.add(AbstractPaymentTable.create(loanInfo));
+        }
+        LoanInfo fixed = new LoanInfo(20000000, 20, 0, 0.01, RateType.FIXED,
+                PaymentType.CONSTANT_PAYMENT, PrepaymentType.DURATION);
+        tables.add(AbstractPaymentTable.create(fixed));
+        tables.add(AbstractPaymentTable.create(loans.get(0)).freeze());
+
+        final AtomicLong progress = new AtomicLong();
+        RateResetResult result = engine.resetRates(tables, 60, 0.015, new ProgressListener() {
+            @Override
+            public void progress(final long completed, final long total) {
+                progress.accumulateAndGet(completed, Math::max);
+            }
+        });
+        assertEquals(loans.size(), result.getChanged());
+        assertEquals(2, result.getSkipped());
+        assertEquals(tables.size(), progress.get());
+
+        long before = 0, after = 0;
+        for (int i = 0; i < loans.size(); i++) {
+            AbstractPaymentTable table = expected.get(i);
+            before += table.getResult().getInterest();
+            table.changeRate(60, 0.015);
+            after += table.getResult().getInterest();
+            assertEquals(table.getResult().getTotal(), tables.get(i).getResult().getTotal());
+        }
+        assertEquals(before, result.getBefore().getInterest());
+        assertEquals(after, result.getAfter().getInterest());
+        assertEquals(after - before, result.getDelta().getInterest());
+        assertEquals(0, result.getDelta().getPrincipal());
+    }
+
+    @Test
+    public void testResetRatesPerLoan() {
+        List<AbstractPaymentTable> tables = new ArrayList<AbstractPaymentTable>();
+        int indexes[] = new int[loans.size()];
+        double rates[] = new double[loans.size()];
+        for (int i = 0; i < loans.size(); i++) {
+            tables.add(AbstractPaymentTable.create(loans.get(i)));
+            indexes[i] = 12 * (i % 30);
+            rates[i] = 0.01 + (i % 5) * 0.002;
+        }
+        RateResetResult result = engine.resetRates(tables, indexes, rates, null);
+        int changed = 0;
+        for (int i = 0; i < loans.size(); i++) {
+            AbstractPaymentTable table = AbstractPaymentTable.create(loans.get(i));
+            if (indexes[i] < table.size()) {
+                table.changeRate(indexes[i], rates[i]);
+                changed++;
+            }
+            assertEquals(table.getResult().getTotal(), tables.get(i).getResult().getTotal());
+        }
+        assertEquals(changed, result.getChanged());
+        assertEquals(loans.size() - changed, result.getSkipped());
+    }
+
+    @Test
+    public void testResetRatesFromFirstInstallment() {
+        List<AbstractPaymentTable> tables = new ArrayList<AbstractPaymentTable>();
+        for (LoanInfo loanInfo : loans) {
+            if (loanInfo.paymentType == PaymentType.CONSTANT_PAYMENT)
+                tables.add(new ConstantPaymentSimple(loanInfo));
+            else
+                tables.add(AbstractPaymentTable.create(loanInfo));
+        }
+        RateResetResult result = engine.resetRates(tables, 0, 0.015, null);
+        assertEquals(tables.size(), result.getChanged());
+        for (int i = 0; i < loans.size(); i++) {
+            AbstractPaymentTable expected = (i % 2 == 0) ? new ConstantPaymentSimple(loans.get(i))
+                                                         : AbstractPaymentTable.create(loans.get(i));
+            expected.changeRate(0, 0.015);
+            assertEquals(expected.getResult().getTotal(), tables.get(i).getResult().getTotal());
+        }
+    }
+
+    @Test
+    public void testResetRatesRejectsBeforeChanging() {
+        List<AbstractPaymentTable> tables = new ArrayList<AbstractPaymentTable>();
+        for (LoanInfo loanInfo : loans)
+            tables.add(AbstractPaymentTable.create(loanInfo));
+        // 分割した後半の処理で失敗する要素
+        tables.set(tables.size() - 1, null);
+        assertUnchangedOnFailure(tables);
+
+        tables.set(tables.size() - 1, tables.get(0));
+        assertUnchangedOnFailure(tables);
+    }
+
+    private void assertUnchangedOnFailure(final List<AbstractPaymentTable> tables) {
+        try {
+            engine.resetRates(tables, 12, 0.03, null);
+            fail();
+        }
+        catch (IllegalArgumentException e) {
+        }
+        for (int i = 0; i < loans.size() - 1; i++) {
+            assertEquals(0, tables.get(i).getHistory().size());
+            assertEquals(AbstractPaymentTable.create(loans.get(i)).getResult().getTotal(), tables.get(i).getResult().getTotal());
+        }
+    }
+}
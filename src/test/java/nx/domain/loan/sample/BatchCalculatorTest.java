@@ -0,0 +1,64 @@
+package nx.domain.loan.sample;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import org.junit.Test;
+
+import nx.domain.loan.model.LoanInfo;
+import nx.domain.loan.model.LoanInfo.PaymentType;
+import nx.domain.loan.model.LoanInfo.PrepaymentType;
+import nx.domain.loan.model.LoanInfo.RateType;
+import nx.domain.loan.model.LoanResult;
+import nx.domain.loan.payment.ScheduleGenerator;
+
+public class BatchCalculatorTest {
+    @Test
+    public void testSummaryOrder() throws Exception {
+        final StringBuilder input = new StringBuilder("# amount,years,months,rate\n\n");
+        for (int i = 0; i < 200; i++)
+            input.append(10_000_000 + i * 100_000).append(",").append(10 + i % 26).append(",0,0.0")
+                 .append(i % 9 + 1).append((i % 2 == 0) ? "" : ",EQUAL_PRINCIPAL_PAYMENT").append('\n');
+
+        final StringWriter out = new StringWriter();
+        final int count = new BatchCalculator(BatchCalculator.Format.CSV, true, 4)
+                .run(new StringReader(input.toString()), out);
+        assertEquals(200, count);
+
+        final String lines[] = out.toString().split("\n");
+        assertEquals(201, lines.length);
+        assertEquals("loan,amount,installments,rate,principal,interest,total,balance", lines[0]);
+        for (int i = 0; i < 200; i++) {
+            final LoanInfo loanInfo = new LoanInfo(10_000_000 + i * 100_000, 10 + i % 26, 0, (i % 9 + 1) / 100D,
+                    RateType.VARIABLE, (i % 2 == 0) ? PaymentType.CONSTANT_PAYMENT : PaymentType.EQUAL_PRINCIPAL_PAYMENT,
+                    PrepaymentType.DURATION);
+            final LoanResult result = ScheduleGenerator.summarize(loanInfo);
+            final String fields[] = lines[i + 1].split(",");
+            assertEquals(String.valueOf(i + 1), fields[0]);
+            assertEquals(String.valueOf(loanInfo.installments), fields[2]);
+            assertEquals(String.format("%.3f", loanInfo.annualRate * 100), fields[3]);
+            assertEquals(String.valueOf(result.getInterest()), fields[5]);
+            assertEquals(String.valueOf(result.getTotal()), fields[6]);
+        }
+    }
+
+    @Test
+    public void testFixedRows() throws Exception {
+        final StringWriter out = new StringWriter();
+        new BatchCalculator(BatchCalculator.Format.FIXED, false, 2)
+                .run(new StringReader("1200000,1,0,0.012\n"), out);
+        final String lines[] = out.toString().split("\n");
+        assertEquals(13, lines.length);
+        assertEquals(14 * 7, lines[1].length());
+        assertEquals("             1             1         1.200", lines[1].substring(0, 42));
+        assertEquals("             0", lines[12].substring(14 * 6));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadLine() throws Exception {
+        new BatchCalculator(BatchCalculator.Format.CSV, false, 1)
+                .run(new StringReader("1000000,1,0\n"), new StringWriter());
+    }
+}